@@ -0,0 +1,48 @@
+# Shared by the stand-in executables (sourced, not run). Everything they do is
+# derived from the input and BENCH_* variables, so runs are repeatable.
+
+# Audio length per character of text and the sample rate of generated speech
+BENCH_SECONDS_PER_CHAR=${BENCH_SECONDS_PER_CHAR:-0.065}
+BENCH_SAMPLE_RATE=${BENCH_SAMPLE_RATE:-22050}
+
+# bench_sleep MILLIS (fractional allowed)
+bench_sleep() {
+    sleep "$(awk -v ms="$1" 'BEGIN { printf "%.3f", ms / 1000 }')"
+}
+
+# bench_calc EXPR with variables passed as -v name=value; prints an integer
+bench_calc() {
+    expr=$1
+    shift
+    awk "$@" "BEGIN { printf \"%d\", $expr }"
+}
+
+# Little-endian integers as raw bytes
+le16() {
+    printf "$(printf '\\%03o\\%03o' $(($1 & 255)) $(($1 >> 8 & 255)))"
+}
+
+le32() {
+    printf "$(printf '\\%03o\\%03o\\%03o\\%03o' $(($1 & 255)) $(($1 >> 8 & 255)) $(($1 >> 16 & 255)) $(($1 >> 24 & 255)))"
+}
+
+# wav_header RATE DATA_BYTES: 16-bit mono PCM
+wav_header() {
+    printf 'RIFF'
+    le32 $(($2 + 36))
+    printf 'WAVEfmt '
+    le32 16
+    le16 1
+    le16 1
+    le32 "$1"
+    le32 $(($1 * 2))
+    le16 2
+    le16 16
+    printf 'data'
+    le32 "$2"
+}
+
+# silence BYTES
+silence() {
+    head -c "$1" /dev/zero
+}
@@ -0,0 +1,562 @@
+package com.narrator;
+
+import com.narrator.engine.AudioChunk;
+import com.narrator.engine.MeteredSubscriber;
+import com.narrator.engine.PcmSubscriber;
+import com.narrator.engine.SpeechEngine;
+import com.narrator.engine.SpeechRequest;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Headless end-to-end load test (mvn -Pbench verify). Runs the flows behind Play
+// and Stop (the narration queue with Piper prefetch into aplay, chunked Piper
+// narration into aplay, espeak-ng streamed into aplay)
+// and Export (Piper and espeak-ng to WAV) over every file of a corpus, plus a
+// batch OCR of generated pages, against the stand-in executables in bench/stubs. The
+// stand-ins emulate latency and real-time factor, so no audio device, voice
+// model or network is needed and results only move when our code does.
+//
+// Every flow first runs once unmeasured, so voice loading and JIT warm-up don't
+// count. Reports time to first audio, export throughput and p50/max latencies, and
+// exits with status 1 when a metric is worse than the baseline by more than the
+// tolerance. --write-baseline stores the current results instead.
+final class LoadHarness {
+
+    private static final int DEFAULT_RUNS = 3;
+    private static final double DEFAULT_TOLERANCE = 0.25;
+    private static final int DEFAULT_OCR_PAGES = 12;
+    // Latencies this close to the baseline are noise, whatever the percentage
+    private static final long SLACK_MILLIS = 20;
+    // How long a narration plays before it is stopped
+    private static final long LISTEN_MILLIS = 500;
+    private static final int FIRST_AUDIO_TIMEOUT_SECONDS = 30;
+
+    private record Narration(long firstAudioMillis, long stopMillis) {}
+
+    // Queue playback: first audio, then the gap between the first item ending
+    // and the prefetched second one starting
+    private record QueuedPlay(long firstAudioMillis, long nextItemMillis, long stopMillis) {}
+
+    private final Path stubs;
+    private final Path corpus;
+    private final int runs;
+    private final int ocrPages;
+
+    private final ScratchSpace scratch = ScratchSpace.createDefault();
+    private final ProcessSupervisor supervisor = new ProcessSupervisor();
+    private final PiperWorkers piperWorkers = new PiperWorkers(scratch, supervisor);
+    private final ChunkedNarrator chunkedNarrator = new ChunkedNarrator(piperWorkers);
+
+    // Metric name -> value, in report order
+    private final Map<String, Double> results = new LinkedHashMap<>();
+
+    private LoadHarness(Path stubs, Path corpus, int runs, int ocrPages) {
+        this.stubs = stubs;
+        this.corpus = corpus;
+        this.runs = runs;
+        this.ocrPages = ocrPages;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path stubs = Path.of("bench", "stubs");
+        Path corpus = Path.of("bench", "corpus");
+        Path baseline = Path.of("bench", "baseline.properties");
+        int runs = DEFAULT_RUNS;
+        int ocrPages = DEFAULT_OCR_PAGES;
+        double tolerance = DEFAULT_TOLERANCE;
+        boolean writeBaseline = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--stubs" -> stubs = Path.of(args[++i]);
+                case "--corpus" -> corpus = Path.of(args[++i]);
+                case "--baseline" -> baseline = Path.of(args[++i]);
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--ocr-pages" -> ocrPages = Integer.parseInt(args[++i]);
+                case "--tolerance" -> tolerance = Double.parseDouble(args[++i]) / 100.0;
+                case "--write-baseline" -> writeBaseline = true;
+                case "" -> {
+                    // Empty bench.options
+                }
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.println("Options: --stubs DIR --corpus DIR --baseline FILE --runs N"
+                        + " --ocr-pages N --tolerance PERCENT --write-baseline");
+                    System.exit(2);
+                }
+            }
+        }
+
+        LoadHarness harness = new LoadHarness(stubs.toAbsolutePath(), corpus, runs, ocrPages);
+        int status;
+        try {
+            harness.checkStubs();
+            harness.run();
+            harness.report();
+            if (writeBaseline) {
+                harness.writeBaseline(baseline);
+                System.out.println("Baseline written to " + baseline);
+                status = 0;
+            } else {
+                status = harness.compare(baseline, tolerance) ? 0 : 1;
+            }
+        } finally {
+            harness.close();
+        }
+        System.exit(status);
+    }
+
+    // espeak-ng and aplay are looked up on PATH; make sure they are the stand-ins
+    // so a run never plays sound or depends on what is installed
+    private void checkStubs() throws IOException {
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.contains("win") || os.contains("mac")) {
+            throw new IOException("The load harness runs on Linux only");
+        }
+        for (String name : List.of("piper", "espeak-ng", "tesseract", "aplay")) {
+            if (!Files.isExecutable(stubs.resolve(name))) {
+                throw new IOException("Missing stand-in: " + stubs.resolve(name));
+            }
+        }
+        for (String name : List.of("espeak-ng", "aplay")) {
+            Path found = onPath(name);
+            if (found == null || !Files.isSameFile(found.getParent(), stubs)) {
+                throw new IOException(name + (found == null ? " is not on PATH" : " resolves to " + found)
+                    + "; put " + stubs + " first on PATH");
+            }
+        }
+    }
+
+    private static Path onPath(String name) {
+        for (String dir : System.getenv().getOrDefault("PATH", "").split(File.pathSeparator)) {
+            Path candidate = Path.of(dir.isEmpty() ? "." : dir, name);
+            if (Files.isExecutable(candidate)) {
+                return candidate.toAbsolutePath();
+            }
+        }
+        return null;
+    }
+
+    private void run() throws Exception {
+        Map<String, String> texts = new TreeMap<>();
+        try (Stream<Path> files = Files.list(corpus)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".txt")) {
+                    texts.put(file.getFileName().toString(), Files.readString(file).trim());
+                }
+            }
+        }
+        if (texts.isEmpty()) {
+            throw new IOException("No .txt files in " + corpus);
+        }
+        long corpusChars = texts.values().stream().mapToLong(String::length).sum();
+        System.out.printf("Corpus: %d file(s), %d chars; %d run(s)%n", texts.size(), corpusChars, runs);
+
+        String piperPath = stubs.resolve("piper").toString();
+        Path model = scratch.directory().resolve("bench-voice.onnx");
+        Files.createDirectories(model.getParent());
+        Files.write(model, new byte[1024]);
+
+        List<Long> queueFirstAudio = new ArrayList<>();
+        List<Long> queueNextItem = new ArrayList<>();
+        List<Long> queueStop = new ArrayList<>();
+        List<Long> piperFirstAudio = new ArrayList<>();
+        List<Long> piperStop = new ArrayList<>();
+        List<Long> espeakFirstAudio = new ArrayList<>();
+        List<Long> espeakStop = new ArrayList<>();
+        List<Long> piperExport = new ArrayList<>();
+        List<Long> espeakExport = new ArrayList<>();
+        long piperExportMillis = 0, espeakExportMillis = 0;
+        Path exportFile = scratch.directory().resolve("bench-export.wav");
+
+        // Run 0 is the warm-up
+        for (int run = 0; run <= runs; run++) {
+            boolean measured = run > 0;
+            for (Map.Entry<String, String> entry : texts.entrySet()) {
+                String text = entry.getValue();
+
+                QueuedPlay queued = playQueue(piperPath, model, text);
+                Narration piper = narratePiper(piperPath, model, text);
+                Narration espeak = narrateEspeak(text);
+                long piperMillis = metered(new PiperEngine(piperWorkers, piperPath),
+                    request(text, model.toString()), new WavFileSubscriber(exportFile, end -> { })).elapsedMillis();
+                long espeakMillis = metered(new SystemEngine(scratch, supervisor, ProcessSupervisor.EXPORT),
+                    request(text, "en-us"), new WavFileSubscriber(exportFile, end -> { })).elapsedMillis();
+
+                System.out.printf("  %-7s %-16s queue %4d ms, next item %4d ms; first audio %4d / %4d ms,"
+                        + " stop %3d / %3d ms, export %5d / %5d ms%n",
+                    measured ? "run " + run : "warm-up", entry.getKey(), queued.firstAudioMillis(),
+                    queued.nextItemMillis(), piper.firstAudioMillis(), espeak.firstAudioMillis(),
+                    piper.stopMillis(), espeak.stopMillis(), piperMillis, espeakMillis);
+                if (measured) {
+                    queueFirstAudio.add(queued.firstAudioMillis());
+                    queueNextItem.add(queued.nextItemMillis());
+                    queueStop.add(queued.stopMillis());
+                    piperFirstAudio.add(piper.firstAudioMillis());
+                    piperStop.add(piper.stopMillis());
+                    espeakFirstAudio.add(espeak.firstAudioMillis());
+                    espeakStop.add(espeak.stopMillis());
+                    piperExport.add(piperMillis);
+                    piperExportMillis += piperMillis;
+                    espeakExport.add(espeakMillis);
+                    espeakExportMillis += espeakMillis;
+                }
+            }
+        }
+        Files.deleteIfExists(exportFile);
+
+        latencies("play-queue.firstAudio", queueFirstAudio);
+        latencies("play-queue.nextItem", queueNextItem);
+        latencies("play-queue.stop", queueStop);
+        latencies("narrate-piper.firstAudio", piperFirstAudio);
+        latencies("narrate-piper.stop", piperStop);
+        latencies("narrate-espeak.firstAudio", espeakFirstAudio);
+        latencies("narrate-espeak.stop", espeakStop);
+        latencies("export-piper.document", piperExport);
+        results.put("export-piper.chars.perSecond", runs * corpusChars * 1000.0 / Math.max(1, piperExportMillis));
+        latencies("export-espeak.document", espeakExport);
+        results.put("export-espeak.chars.perSecond", runs * corpusChars * 1000.0 / Math.max(1, espeakExportMillis));
+
+        runOcr();
+    }
+
+    // Play with the default settings: the text is queued twice, each item is
+    // rendered whole by Piper into scratch space (the second one prefetched while
+    // the first plays) and played by WavPlayer. Stopped once the second has started.
+    private QueuedPlay playQueue(String piperPath, Path model, String text) throws Exception {
+        long[] playStarts = new long[2];
+        long[] playEnd = new long[1];
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        CountDownLatch idle = new CountDownLatch(1);
+        WavPlayer wavPlayer = new WavPlayer(supervisor);
+        NarrationQueue queue = new NarrationQueue(
+            item -> {
+                BufferSubscriber cache = new BufferSubscriber(scratch);
+                new PiperEngine(piperWorkers, piperPath).synthesize(request(item, model.toString())).subscribe(cache);
+                cache.await();
+                return cache.result();
+            },
+            (item, audio) -> {
+                int index = playStarts[0] == 0 ? 0 : 1;
+                playStarts[index] = System.nanoTime();
+                if (index == 1) {
+                    secondStarted.countDown();
+                }
+                wavPlayer.play(audio);
+                if (index == 0) {
+                    playEnd[0] = System.nanoTime();
+                }
+            },
+            new NarrationQueue.Listener() {
+                @Override
+                public void itemStarted(NarrationQueue.Item item, int remaining) {
+                }
+
+                @Override
+                public void itemFailed(NarrationQueue.Item item, Exception error) {
+                    error.printStackTrace();
+                    secondStarted.countDown();
+                }
+
+                @Override
+                public void idle() {
+                    idle.countDown();
+                }
+            });
+
+        long start = System.nanoTime();
+        queue.add(new NarrationQueue.Item("first", text));
+        queue.add(new NarrationQueue.Item("second", text));
+        if (!secondStarted.await(FIRST_AUDIO_TIMEOUT_SECONDS * 4L, TimeUnit.SECONDS) || playStarts[1] == 0) {
+            queue.clear();
+            supervisor.killGroup(ProcessSupervisor.NARRATION);
+            throw new IOException("Queued narration did not reach its second item");
+        }
+        Thread.sleep(LISTEN_MILLIS);
+
+        long stop = System.nanoTime();
+        queue.clear();
+        supervisor.killGroup(ProcessSupervisor.NARRATION);
+        idle.await(FIRST_AUDIO_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long stopMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stop);
+        return new QueuedPlay(TimeUnit.NANOSECONDS.toMillis(playStarts[0] - start),
+            TimeUnit.NANOSECONDS.toMillis(playStarts[1] - playEnd[0]), stopMillis);
+    }
+
+    // Play in chunked Piper mode
+    private Narration narratePiper(String piperPath, Path model, String text) throws Exception {
+        ChunkedNarrator.Session session = chunkedNarrator.newSession(new TimingIndex(text.length()));
+        CountDownLatch firstAudio = new CountDownLatch(1);
+        AplayChunkOutput aplay = new AplayChunkOutput(supervisor);
+        ChunkedNarrator.AudioOut out = new ChunkedNarrator.AudioOut() {
+            @Override
+            public void play(ScratchSpace.Buffer wav) throws Exception {
+                firstAudio.countDown();
+                aplay.play(wav);
+            }
+
+            @Override
+            public void close() throws Exception {
+                aplay.close();
+            }
+        };
+        return narrate(() -> chunkedNarrator.speak(session, piperPath, model, text, out), firstAudio, session::cancel);
+    }
+
+    // Play with the system engine: espeak-ng streamed into aplay
+    private Narration narrateEspeak(String text) throws Exception {
+        CountDownLatch firstAudio = new CountDownLatch(1);
+        PlaybackSubscriber player = new PlaybackSubscriber(supervisor, new TimingIndex(text.length()));
+        return narrate(() -> {
+            new SystemEngine(scratch, supervisor, ProcessSupervisor.NARRATION).synthesize(request(text, "en-us"))
+                .subscribe(new FirstAudio(player, firstAudio));
+            player.await();
+            return null;
+        }, firstAudio, () -> { });
+    }
+
+    // Narration is paced by playback, so it is not played to the end: once audio
+    // has started and played for a moment it is stopped the way Stop does it, and
+    // the time until the flow has wound down is the stop latency
+    private Narration narrate(Callable<?> flow, CountDownLatch firstAudio, Runnable cancel) throws Exception {
+        long start = System.nanoTime();
+        FutureTask<?> narration = new FutureTask<>(flow);
+        Thread thread = new Thread(narration, "bench-narration");
+        thread.setDaemon(true);
+        thread.start();
+
+        long deadline = start + TimeUnit.SECONDS.toNanos(FIRST_AUDIO_TIMEOUT_SECONDS);
+        while (!firstAudio.await(50, TimeUnit.MILLISECONDS)) {
+            if (narration.isDone()) {
+                narration.get();
+                throw new IOException("Narration ended without audio");
+            }
+            if (System.nanoTime() > deadline) {
+                cancel.run();
+                supervisor.killGroup(ProcessSupervisor.NARRATION);
+                throw new IOException("No audio after " + FIRST_AUDIO_TIMEOUT_SECONDS + " s");
+            }
+        }
+        long firstAudioMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Thread.sleep(LISTEN_MILLIS);
+
+        long stop = System.nanoTime();
+        cancel.run();
+        supervisor.killGroup(ProcessSupervisor.NARRATION);
+        try {
+            narration.get();
+        } catch (ExecutionException e) {
+            // Stopped while writing to the player
+        }
+        return new Narration(firstAudioMillis, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stop));
+    }
+
+    private static SpeechRequest request(String text, String voice) {
+        return new SpeechRequest(text, voice, 1.0, 100);
+    }
+
+    // Streams one request into the subscriber and waits for the end
+    private static MeteredSubscriber.Metrics metered(SpeechEngine engine, SpeechRequest request,
+                                                     PcmSubscriber subscriber) throws Exception {
+        MeteredSubscriber.Metrics[] metrics = new MeteredSubscriber.Metrics[1];
+        engine.synthesize(request).subscribe(new MeteredSubscriber(subscriber, m -> metrics[0] = m));
+        subscriber.await();
+        return metrics[0];
+    }
+
+    private void runOcr() throws Exception {
+        Path dir = scratch.directory().resolve("bench-pages");
+        Files.createDirectories(dir);
+        List<Path> pages = new ArrayList<>();
+        for (int i = 0; i < ocrPages; i++) {
+            BufferedImage image = new BufferedImage(600, 800, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = image.createGraphics();
+            g.fillRect(0, 0, 600, 800);
+            g.dispose();
+            Path page = dir.resolve(String.format("page-%03d.png", i + 1));
+            ImageIO.write(image, "png", page.toFile());
+            pages.add(page);
+        }
+
+        OcrService ocr = new OcrService(scratch, supervisor);
+        String tesseractPath = stubs.resolve("tesseract").toString();
+        List<Long> firstPage = new ArrayList<>();
+        long totalMillis = 0;
+        int workers = 0;
+        // Run 0 is the warm-up
+        for (int run = 0; run <= runs; run++) {
+            long start = System.nanoTime();
+            long[] first = {-1};
+            int[] failed = {0};
+            CountDownLatch done = new CountDownLatch(1);
+            OcrBatch batch = new OcrBatch(ocr, scratch, tesseractPath, pages, new OcrBatch.Listener() {
+                @Override
+                public void pageDone(OcrBatch.Page page) {
+                    if (first[0] < 0) {
+                        first[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                    if (page.error() != null) {
+                        failed[0]++;
+                    }
+                }
+
+                @Override
+                public void finished(int count, boolean cancelled) {
+                    done.countDown();
+                }
+            });
+            workers = batch.workers();
+            batch.start();
+            done.await();
+            if (failed[0] > 0) {
+                throw new IOException(failed[0] + " OCR page(s) failed");
+            }
+            if (run > 0) {
+                firstPage.add(first[0]);
+                totalMillis += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+        }
+        System.out.printf("  OCR: %d page(s), %d worker(s)%n", ocrPages, workers);
+
+        latencies("ocr.firstPage", firstPage);
+        results.put("ocr.pages.perSecond", runs * ocrPages * 1000.0 / Math.max(1, totalMillis));
+    }
+
+    private void latencies(String name, List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        // A handful of samples per metric: the worst one is reported as max,
+        // since a high percentile would be the same number under a misleading name
+        results.put(name + ".p50.ms", (double) percentile(sorted, 50));
+        results.put(name + ".max.ms", (double) sorted.get(sorted.size() - 1));
+    }
+
+    // Nearest rank
+    private static long percentile(List<Long> sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private void report() {
+        System.out.println();
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            System.out.printf("%-36s %10.1f%n", result.getKey(), result.getValue());
+        }
+    }
+
+    // Latencies (.ms) may not grow and rates (.perSecond) may not shrink by more
+    // than the tolerance. Metrics missing from the baseline are reported only.
+    private boolean compare(Path baselineFile, double tolerance) throws IOException {
+        if (!Files.exists(baselineFile)) {
+            System.out.println("\nNo baseline at " + baselineFile + "; run with --write-baseline to create one");
+            return true;
+        }
+        Properties baseline = new Properties();
+        try (InputStream in = Files.newInputStream(baselineFile)) {
+            baseline.load(in);
+        }
+        // Percentiles over a different number of samples don't compare
+        if (!settings().equals(baseline.getProperty("settings"))) {
+            System.out.printf("%nBaseline %s was taken with %s, this run used %s; not compared%n",
+                baselineFile, baseline.getProperty("settings"), settings());
+            return true;
+        }
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            String stored = baseline.getProperty(result.getKey());
+            if (stored == null) {
+                continue;
+            }
+            double expected = Double.parseDouble(stored);
+            double actual = result.getValue();
+            boolean worse = result.getKey().endsWith(".ms")
+                ? actual > expected * (1 + tolerance) + SLACK_MILLIS
+                : actual < expected * (1 - tolerance);
+            if (worse) {
+                regressions.add(String.format("%s: %.1f, baseline %.1f", result.getKey(), actual, expected));
+            }
+        }
+        System.out.println();
+        if (regressions.isEmpty()) {
+            System.out.printf("No regressions against %s (tolerance %.1f%%)%n", baselineFile, tolerance * 100);
+            return true;
+        }
+        System.out.printf("REGRESSION against %s (tolerance %.1f%%):%n", baselineFile, tolerance * 100);
+        regressions.forEach(r -> System.out.println("  " + r));
+        return false;
+    }
+
+    private void writeBaseline(Path baselineFile) throws IOException {
+        try (Writer out = Files.newBufferedWriter(baselineFile, StandardCharsets.UTF_8)) {
+            out.write("# Load harness baseline (mvn -Pbench verify -Dbench.options=--write-baseline)\n");
+            out.write("settings=" + settings() + "\n");
+            for (Map.Entry<String, Double> result : results.entrySet()) {
+                out.write(String.format(Locale.ROOT, "%s=%.1f%n", result.getKey(), result.getValue()));
+            }
+        }
+    }
+
+    private String settings() {
+        return "runs " + runs + " after a warm-up, ocr pages " + ocrPages;
+    }
+
+    private void close() {
+        piperWorkers.close();
+        supervisor.killAll();
+    }
+
+    // Marks when the first chunk is handed to the player
+    private static final class FirstAudio implements Flow.Subscriber<AudioChunk> {
+        private final Flow.Subscriber<AudioChunk> delegate;
+        private final CountDownLatch firstAudio;
+
+        FirstAudio(Flow.Subscriber<AudioChunk> delegate, CountDownLatch firstAudio) {
+            this.delegate = delegate;
+            this.firstAudio = firstAudio;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(AudioChunk chunk) {
+            firstAudio.countDown();
+            delegate.onNext(chunk);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.narrator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Checks TextNormalizer on a fixed set of inputs (run first by mvn -Pbench verify).
+// The abbreviation and number tables are easy to get subtly wrong, so every kind
+// of rewrite and boundary has a case here; exits with status 1 on a mismatch.
+final class NormalizerCheck {
+
+    private final List<String> failures = new ArrayList<>();
+    private int checks;
+
+    public static void main(String[] args) {
+        NormalizerCheck check = new NormalizerCheck();
+        check.spoken();
+        check.sentences();
+        if (check.failures.isEmpty()) {
+            System.out.printf("TextNormalizer: %d checks passed%n", check.checks);
+            return;
+        }
+        System.out.printf("TextNormalizer: %d of %d checks failed%n", check.failures.size(), check.checks);
+        check.failures.forEach(f -> System.out.println("  " + f));
+        System.exit(1);
+    }
+
+    private void spoken() {
+        // Abbreviations
+        spoken("Bring a snack, e.g. an apple.", "Bring a snack, for example an apple.");
+        spoken("Pens, paper, etc.", "Pens, paper, et cetera.");
+        spoken("Pens, paper, etc. are on the desk.", "Pens, paper, et cetera are on the desk.");
+        spoken("Dr. Smith met Mr. Jones.", "Doctor Smith met Mister Jones.");
+        spoken("We met on Jan. 5th.", "We met on January fifth.");
+
+        // Numbers
+        spoken("It costs $12.50 today.", "It costs twelve dollars and fifty cents today.");
+        spoken("She came 3rd.", "She came third.");
+        spoken("It was 1984.", "It was nineteen eighty-four.");
+        spoken("We sold 1,250 copies.", "We sold one thousand two hundred fifty copies.");
+        spoken("Growth was 7%.", "Growth was seven percent.");
+        spoken("Pi is about 3.14.", "Pi is about three point one four.");
+
+        // OCR cleanup
+        spoken("An exam-\nple of it.", "An example of it.");
+        spoken("A Well-\nKnown name.", "A Well-Known name.");
+        spoken("| Name | Age |\n| Ann | 30 |", "Name Age Ann thirty");
+
+        // Markdown
+        spoken("# Title\n\nSome **bold** and `code` with [a link](http://x.org).",
+            "Title Some bold and code with a link.");
+        spoken("- first item\n- second item", "first item second item");
+        spoken("Run this:\n\n```sh\nls -la | wc -l\n# count.\n```\n\nThen stop.", "Run this: Code block. Then stop.");
+        spoken("Unclosed:\n~~~\nx = 1. y = 2.", "Unclosed: Code block.");
+    }
+
+    private void sentences() {
+        sentences("One. Two!", "One.", "Two!");
+        sentences("Pens, paper, etc. Then we left.", "Pens, paper, et cetera.", "Then we left.");
+        sentences("\"Stop!\" and he did.", "\"Stop!\" and he did.");
+        sentences("Mr. Smith is here. He waits.", "Mister Smith is here.", "He waits.");
+        sentences("# Title\nText follows.", "Title", "Text follows.");
+        sentences("Before\n```\ncode()\n```\nAfter.", "Before", "Code block.", "After.");
+
+        // Offsets point into the source, not the spoken text
+        List<TextNormalizer.Sentence> found = TextNormalizer.sentences("Dr. Who. It is 3rd.");
+        check("offsets of \"Dr. Who. It is 3rd.\"",
+            found.size() == 2 && found.get(0).start() == 0 && found.get(0).end() == 8
+                && found.get(1).start() == 9 && found.get(1).end() == 19,
+            found.toString());
+        // A code block's placeholder covers the whole block, fences included
+        found = TextNormalizer.sentences("A.\n```\nb()\n```");
+        check("offsets of a code block",
+            found.size() == 2 && found.get(1).start() == 3 && found.get(1).end() == 14,
+            found.toString());
+    }
+
+    private void spoken(String input, String expected) {
+        String actual = TextNormalizer.spoken(input);
+        check(quote(input), expected.equals(actual), quote(actual) + ", expected " + quote(expected));
+    }
+
+    private void sentences(String input, String... expected) {
+        List<String> actual = new ArrayList<>();
+        for (TextNormalizer.Sentence sentence : TextNormalizer.sentences(input)) {
+            actual.add(sentence.text());
+        }
+        check(quote(input), actual.equals(List.of(expected)), actual + ", expected " + List.of(expected));
+    }
+
+    private void check(String what, boolean ok, String detail) {
+        checks++;
+        if (!ok) {
+            failures.add(what + ": " + detail);
+        }
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\n", "\\n") + "\"";
+    }
+}
@@ -0,0 +1,57 @@
+package com.narrator;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Chunked narration output on Linux: one aplay process fed raw PCM, so chunks
+// play back to back without gaps. Started with the format of the first chunk.
+final class AplayChunkOutput implements ChunkedNarrator.AudioOut {
+
+    private final ProcessSupervisor supervisor;
+    private ProcessSupervisor.Supervised player;
+    private Wav.Format format;
+
+    AplayChunkOutput(ProcessSupervisor supervisor) {
+        this.supervisor = supervisor;
+    }
+
+    @Override
+    public void play(ScratchSpace.Buffer wav) throws Exception {
+        try (InputStream in = wav.inputStream()) {
+            Wav.Format chunkFormat = Wav.readHeader(in);
+            if (player == null) {
+                format = chunkFormat;
+                ProcessBuilder pb = new ProcessBuilder("aplay", "-q", "-t", "raw",
+                    "-f", format.bitsPerSample() == 8 ? "U8" : "S16_LE",
+                    "-r", String.valueOf(format.sampleRate()),
+                    "-c", String.valueOf(format.channels()));
+                player = supervisor.start(ProcessSupervisor.NARRATION, "aplay-stream", pb, null, null,
+                    ProcessSupervisor.PLAYER_STALL_TIMEOUT);
+                player.watchStdin();
+            } else if (!format.sameEncoding(chunkFormat)) {
+                throw new IOException("Audio format changed between chunks");
+            }
+            try {
+                in.transferTo(player.stdin());
+                player.stdin().flush();
+            } catch (IOException e) {
+                if (player.failure() != null) {
+                    throw new IOException("aplay " + player.failure(), e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (player != null) {
+            try {
+                player.stdin().close();
+            } catch (IOException ignored) {
+                // Stopped
+            }
+            player.waitFor();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.narrator;
 
+import com.narrator.engine.AudioChunk;
+import com.narrator.engine.MeteredSubscriber;
+import com.narrator.engine.SpeechRequest;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
@@ -15,21 +18,29 @@ import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
-import javafx.scene.robot.Robot;
 import javafx.scene.shape.Rectangle;
 import javafx.stage.FileChooser;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
-import javafx.embed.swing.SwingFXUtils;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 public class App extends Application {
 
@@ -47,10 +58,71 @@ public class App extends Application {
     private TextField piperPathField;
     private TextField tesseractPathField;
     
-    private Process ttsProcess;
+    private CheckBox dialogueModeCheck;
+    private CheckBox chunkedModeCheck;
+    private ComboBox<String> highlightSelector;
+    private Spinner<Integer> prefetchDepthSpinner;
+    private Spinner<Integer> prefetchCapSpinner;
+    private Label queueLabel;
+    private HBox chapterBar;
+    private ComboBox<String> chapterSelector;
+    
     private volatile boolean isSpeaking = false;
+    private NarrationQueue narrationQueue;
+    
+    // Every engine, OCR and player subprocess runs under the supervisor
+    private final ProcessSupervisor supervisor = new ProcessSupervisor();
+    private final WavPlayer wavPlayer = new WavPlayer(supervisor);
+    
+    // Intermediate audio and capture images, in memory with a capped spill directory
+    private final ScratchSpace scratch = ScratchSpace.createDefault();
+    
+    // Warm Piper processes, one per voice
+    private final PiperWorkers piperWorkers = new PiperWorkers(scratch, supervisor);
+    private final DialogueRenderer dialogueRenderer = new DialogueRenderer(piperWorkers);
+    private final ChunkedNarrator chunkedNarrator = new ChunkedNarrator(piperWorkers);
+    private volatile ChunkedNarrator.Session chunkedSession;
+    private volatile String lastRunSummary;
+    // Last metrics of each kind of engine stream, for diagnostics
+    private final Map<String, MeteredSubscriber.Metrics> streamMetrics = new ConcurrentHashMap<>();
     private Stage primaryStage;
     
+    // Read-along: the playing item's timing index, sampled by a ticker and shown
+    // through a coalescer so at most one update is ever queued on the FX thread
+    private volatile NarrationQueue.Item readAlongItem;
+    private volatile TimingIndex readAlongIndex;
+    private final FxUpdateCoalescer<ReadAlong> readAlongUpdates = new FxUpdateCoalescer<>(this::showReadAlong);
+    private final ScheduledExecutorService readAlongTicker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "read-along");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean highlighted;
+    // The selection the read-along last made; once the user changes it, highlighting
+    // stays off until narration ends
+    private int highlightAnchor = -1;
+    private int highlightCaret = -1;
+    private boolean highlightSuspended;
+    
+    private record ReadAlong(NarrationQueue.Item item, TimingIndex.Position position) {}
+    
+    // Open EPUB/HTML document; only the chapter in the editor is decoded
+    private volatile Book book;
+    private int bookChapter = -1;
+    private String bookChapterText;
+    // Last chapter queued for narration; when it starts, the next one is decoded and queued
+    private volatile NarrationQueue.Item bookItem;
+    private volatile int bookItemChapter;
+    
+    // Loaded on first capture, keeps AWT/Swing interop out of startup
+    private OcrService ocrService;
+    // Running "Open Images for OCR" batch, if any
+    private OcrBatch ocrBatch;
+    
+    // Startup timing (ms since JVM start), -1 until reached
+    private long firstFrameMillis = -1;
+    private long interactiveMillis = -1;
+    
     // Screen capture variables
     private double startX, startY, endX, endY;
     
@@ -62,6 +134,13 @@ public class App extends Application {
         {"Jenny (UK Female)", "en_GB-jenny_dioco-medium", "https://huggingface.co/rhasspy/piper-voices/resolve/main/en/en_GB/jenny_dioco/medium/en_GB-jenny_dioco-medium.onnx"},
         {"Alan (UK Male)", "en_GB-alan-medium", "https://huggingface.co/rhasspy/piper-voices/resolve/main/en/en_GB/alan/medium/en_GB-alan-medium.onnx"},
     };
+    
+    private static final long READ_ALONG_PERIOD_MILLIS = 40;
+    // Estimated speaking time for live system speech, which reports no audio
+    private static final double SYSTEM_SECONDS_PER_CHAR = 0.065;
+    
+    // Fallback for startup timing when the OS doesn't report the process start time
+    private static final long LAUNCH_MILLIS = System.currentTimeMillis();
 
     @Override
     public void start(Stage primaryStage) {
@@ -71,6 +150,36 @@ public class App extends Application {
         BorderPane root = new BorderPane();
         root.getStyleClass().add("root-pane");
 
+        narrationQueue = new NarrationQueue(this::synthesizeForQueue, this::playQueueItem, new NarrationQueue.Listener() {
+            @Override
+            public void itemStarted(NarrationQueue.Item item, int remaining) {
+                if (item == bookItem) {
+                    continueBook(item, bookItemChapter);
+                }
+                Platform.runLater(() -> {
+                    isSpeaking = true;
+                    playButton.setText("Pause");
+                    stopButton.setDisable(false);
+                    statusLabel.setText("Speaking: " + item.label());
+                    progressBar.setProgress(-1);
+                    updateQueueLabel();
+                });
+            }
+
+            @Override
+            public void itemFailed(NarrationQueue.Item item, Exception error) {
+                Platform.runLater(() -> statusLabel.setText("Error: " + error.getMessage()));
+            }
+
+            @Override
+            public void idle() {
+                resetControls();
+            }
+        });
+
+        readAlongTicker.scheduleAtFixedRate(this::sampleReadAlong,
+            READ_ALONG_PERIOD_MILLIS, READ_ALONG_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+
         // Menu Bar
         root.setTop(createMenuBar(primaryStage));
 
@@ -79,23 +188,31 @@ public class App extends Application {
         textArea.setPromptText("Enter or paste text here to narrate...\n\nPress F5 to capture screen region and OCR!");
         textArea.setWrapText(true);
         textArea.getStyleClass().add("text-input");
-        VBox centerBox = new VBox(10, new Label("Text to Narrate (F5: Screen Capture OCR):"), textArea);
+        chapterBar = createChapterBar();
+        VBox centerBox = new VBox(10, new Label("Text to Narrate (F5: Screen Capture OCR):"), chapterBar, textArea);
         centerBox.setPadding(new Insets(15));
         VBox.setVgrow(textArea, Priority.ALWAYS);
         root.setCenter(centerBox);
 
-        // Right - Settings Panel
-        root.setRight(createSettingsPanel(primaryStage));
+        // Right - Settings Panel (built after the first frame, see finishStartup)
+        Region settingsPlaceholder = new Region();
+        settingsPlaceholder.setPrefWidth(270);
+        settingsPlaceholder.getStyleClass().add("settings-panel");
+        root.setRight(settingsPlaceholder);
 
         // Bottom - Controls
         root.setBottom(createControlBar());
 
+        // Menus and controls reach into the settings panel, so they wait for it
+        root.getTop().setDisable(true);
+        root.getBottom().setDisable(true);
+
         Scene scene = new Scene(root, 1000, 700);
         scene.getStylesheets().add(getClass().getResource("/styles.css").toExternalForm());
         
         // F5 hotkey for screen capture
         scene.setOnKeyPressed(e -> {
-            if (e.getCode() == KeyCode.F5) {
+            if (e.getCode() == KeyCode.F5 && interactiveMillis >= 0) {
                 startScreenCapture();
             }
         });
@@ -103,9 +220,54 @@ public class App extends Application {
         primaryStage.setScene(scene);
         primaryStage.setMinWidth(850);
         primaryStage.setMinHeight(600);
+        
+        // Defer the heavy parts of the UI until the first frame has been laid out
+        Runnable firstPulse = new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                firstFrameMillis = millisSinceLaunch();
+                Platform.runLater(() -> finishStartup(root));
+            }
+        };
+        scene.addPostLayoutPulseListener(firstPulse);
         primaryStage.show();
     }
 
+    private void finishStartup(BorderPane root) {
+        root.setRight(createSettingsPanel(primaryStage));
+        root.getTop().setDisable(false);
+        root.getBottom().setDisable(false);
+        interactiveMillis = millisSinceLaunch();
+        // Details under Help > Diagnostics
+        statusLabel.setText(String.format("Ready in %.1f s - Press F5 to capture screen", interactiveMillis / 1000.0));
+        
+        // AppCDS training run (see the appcds profile in pom.xml): load the capture
+        // stack too so it lands in the archive, then quit
+        if (Boolean.getBoolean("jnarrator.cdsTraining")) {
+            try {
+                ocr().warmUp();
+            } catch (IOException e) {
+                System.err.println("AppCDS training: capture path not loaded: " + e.getMessage());
+            }
+            Platform.exit();
+        }
+    }
+
+    private static long millisSinceLaunch() {
+        long launched = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElse(LAUNCH_MILLIS);
+        return System.currentTimeMillis() - launched;
+    }
+
+    private OcrService ocr() {
+        if (ocrService == null) {
+            ocrService = new OcrService(scratch, supervisor);
+        }
+        return ocrService;
+    }
+
     private void startScreenCapture() {
         // Hide main window
         primaryStage.setIconified(true);
@@ -213,40 +375,15 @@ public class App extends Application {
         statusLabel.setText("Capturing screen...");
         progressBar.setProgress(-1);
         
+        // Robot must run on the FX thread; the OCR itself runs in the background
+        OcrService ocr = ocr();
+        WritableImage capture = ocr.captureScreen(x, y, w, h);
+        String tesseractPath = tesseractPathField.getText();
+        
         Task<String> ocrTask = new Task<>() {
             @Override
             protected String call() throws Exception {
-                // Use Robot to capture screen
-                Robot robot = new Robot();
-                WritableImage capture = robot.getScreenCapture(null, x, y, w, h);
-                
-                // Save to temp file
-                BufferedImage bufferedImage = SwingFXUtils.fromFXImage(capture, null);
-                File tempFile = File.createTempFile("capture_", ".png");
-                tempFile.deleteOnExit();
-                ImageIO.write(bufferedImage, "png", tempFile);
-                
-                // Run Tesseract OCR
-                String tesseractPath = tesseractPathField.getText();
-                ProcessBuilder pb = new ProcessBuilder(
-                    tesseractPath,
-                    tempFile.getAbsolutePath(),
-                    "stdout",
-                    "-l", "eng"
-                );
-                pb.redirectErrorStream(true);
-                
-                Process process = pb.start();
-                StringBuilder output = new StringBuilder();
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        output.append(line).append("\n");
-                    }
-                }
-                process.waitFor();
-                
-                return output.toString().trim();
+                return ocr.recognize(capture, tesseractPath);
             }
         };
         
@@ -257,10 +394,8 @@ public class App extends Application {
                 statusLabel.setText("OCR complete - " + text.split("\\s+").length + " words");
                 progressBar.setProgress(1);
                 
-                // Auto-speak if text found
-                if (!text.isEmpty()) {
-                    startSpeaking();
-                }
+                // Auto-speak: queued behind whatever is playing
+                enqueue(new NarrationQueue.Item("OCR capture", text, 0));
             } else {
                 statusLabel.setText("No text detected in selection");
                 progressBar.setProgress(0);
@@ -284,13 +419,17 @@ public class App extends Application {
         
         // File Menu
         Menu fileMenu = new Menu("File");
-        MenuItem openItem = new MenuItem("Open Text File...");
+        MenuItem openItem = new MenuItem("Open File...");
         openItem.setOnAction(e -> openFile(stage));
+        MenuItem openImagesItem = new MenuItem("Open Images for OCR...");
+        openImagesItem.setOnAction(e -> openImagesForOcr(stage));
+        MenuItem queueFileItem = new MenuItem("Add Text File to Queue...");
+        queueFileItem.setOnAction(e -> queueFile(stage));
         MenuItem exportItem = new MenuItem("Export to WAV...");
         exportItem.setOnAction(e -> exportAudio(stage));
         MenuItem exitItem = new MenuItem("Exit");
         exitItem.setOnAction(e -> Platform.exit());
-        fileMenu.getItems().addAll(openItem, exportItem, new SeparatorMenuItem(), exitItem);
+        fileMenu.getItems().addAll(openItem, openImagesItem, queueFileItem, exportItem, new SeparatorMenuItem(), exitItem);
 
         // Edit Menu
         Menu editMenu = new Menu("Edit");
@@ -298,9 +437,11 @@ public class App extends Application {
         clearItem.setOnAction(e -> textArea.clear());
         MenuItem pasteItem = new MenuItem("Paste");
         pasteItem.setOnAction(e -> textArea.paste());
+        MenuItem queueTextItem = new MenuItem("Add Text to Queue");
+        queueTextItem.setOnAction(e -> queueEditorText());
         MenuItem captureItem = new MenuItem("Screen Capture OCR (F5)");
         captureItem.setOnAction(e -> startScreenCapture());
-        editMenu.getItems().addAll(clearItem, pasteItem, new SeparatorMenuItem(), captureItem);
+        editMenu.getItems().addAll(clearItem, pasteItem, queueTextItem, new SeparatorMenuItem(), captureItem);
 
         // Help Menu
         Menu helpMenu = new Menu("Help");
@@ -308,15 +449,17 @@ public class App extends Application {
         setupPiperItem.setOnAction(e -> showPiperSetupDialog());
         MenuItem setupTesseractItem = new MenuItem("Setup Tesseract OCR...");
         setupTesseractItem.setOnAction(e -> showTesseractSetupDialog());
+        MenuItem diagnosticsItem = new MenuItem("Diagnostics...");
+        diagnosticsItem.setOnAction(e -> showDiagnostics());
         MenuItem aboutItem = new MenuItem("About");
         aboutItem.setOnAction(e -> showAbout());
-        helpMenu.getItems().addAll(setupPiperItem, setupTesseractItem, new SeparatorMenuItem(), aboutItem);
+        helpMenu.getItems().addAll(setupPiperItem, setupTesseractItem, new SeparatorMenuItem(), diagnosticsItem, aboutItem);
 
         menuBar.getMenus().addAll(fileMenu, editMenu, helpMenu);
         return menuBar;
     }
 
-    private VBox createSettingsPanel(Stage stage) {
+    private ScrollPane createSettingsPanel(Stage stage) {
         VBox settingsPanel = new VBox(10);
         settingsPanel.setPadding(new Insets(12));
         settingsPanel.setPrefWidth(270);
@@ -375,11 +518,15 @@ public class App extends Application {
         engineSelector.getItems().addAll("Piper (Neural - Best)", "System Default");
         engineSelector.setValue("Piper (Neural - Best)");
         engineSelector.setMaxWidth(Double.MAX_VALUE);
-        engineSelector.setOnAction(e -> updateVoiceOptions());
+        engineSelector.setOnAction(e -> {
+            updateVoiceOptions();
+            narrationQueue.invalidatePrefetch();
+        });
 
         Label voiceLabel = new Label("Voice:");
         voiceSelector = new ComboBox<>();
         voiceSelector.setMaxWidth(Double.MAX_VALUE);
+        voiceSelector.setOnAction(e -> narrationQueue.invalidatePrefetch());
         updateVoiceOptions();
 
         Label piperPathLabel = new Label("Piper Path:");
@@ -396,6 +543,42 @@ public class App extends Application {
         downloadVoiceBtn.setMaxWidth(Double.MAX_VALUE);
         downloadVoiceBtn.setOnAction(e -> downloadSelectedVoice());
 
+        dialogueModeCheck = new CheckBox("Dialogue mode (Name: lines)");
+        dialogueModeCheck.setTooltip(new Tooltip("Each speaker gets a different downloaded Piper voice"));
+        dialogueModeCheck.setOnAction(e -> narrationQueue.invalidatePrefetch());
+
+        chunkedModeCheck = new CheckBox("Chunked streaming (adaptive)");
+        chunkedModeCheck.setTooltip(new Tooltip("Piper starts speaking after the first sentence; chunk size adapts to the voice's speed"));
+        chunkedModeCheck.setOnAction(e -> narrationQueue.invalidatePrefetch());
+
+        Label warmVoicesLabel = new Label("Warm voices (max):");
+        Spinner<Integer> warmVoicesSpinner = new Spinner<>(1, PIPER_VOICES.length, PiperWorkers.DEFAULT_MAX_RESIDENT);
+        warmVoicesSpinner.setPrefWidth(80);
+        warmVoicesSpinner.valueProperty().addListener((obs, old, val) -> piperWorkers.setMaxResident(val));
+        HBox warmVoicesBox = new HBox(5, warmVoicesLabel, warmVoicesSpinner);
+        warmVoicesBox.setAlignment(Pos.CENTER_LEFT);
+
+        Label voiceMemoryLabel = new Label("Voice memory cap (MB):");
+        Spinner<Integer> voiceMemorySpinner = new Spinner<>(256, 16384,
+            (int) (PiperWorkers.DEFAULT_MEMORY_CAP / (1024 * 1024)), 256);
+        voiceMemorySpinner.setPrefWidth(90);
+        voiceMemorySpinner.valueProperty().addListener((obs, old, val) -> piperWorkers.setMemoryCap(val * 1024L * 1024L));
+        HBox voiceMemoryBox = new HBox(5, voiceMemoryLabel, voiceMemorySpinner);
+        voiceMemoryBox.setAlignment(Pos.CENTER_LEFT);
+
+        Label idleUnloadLabel = new Label("Unload idle voices after (min):");
+        Spinner<Integer> idleUnloadSpinner = new Spinner<>(1, 120, (int) PiperWorkers.DEFAULT_IDLE_TIMEOUT.toMinutes());
+        idleUnloadSpinner.setPrefWidth(80);
+        idleUnloadSpinner.valueProperty().addListener((obs, old, val) -> piperWorkers.setIdleTimeout(Duration.ofMinutes(val)));
+        HBox idleUnloadBox = new HBox(5, idleUnloadLabel, idleUnloadSpinner);
+        idleUnloadBox.setAlignment(Pos.CENTER_LEFT);
+
+        Label highlightLabel = new Label("Read-along highlight:");
+        highlightSelector = new ComboBox<>();
+        highlightSelector.getItems().addAll("Sentence", "Word", "Off");
+        highlightSelector.setValue("Sentence");
+        highlightSelector.setMaxWidth(Double.MAX_VALUE);
+
         Label speedLabel = new Label("Speed: 1.0x");
         speedSlider = new Slider(0.5, 2.0, 1.0);
         speedSlider.setShowTickLabels(true);
@@ -410,6 +593,31 @@ public class App extends Application {
         volumeSlider.valueProperty().addListener((obs, old, val) -> 
             volumeLabel.setText(String.format("Volume: %.0f%%", val.doubleValue())));
 
+        // Queue Section
+        Label queueSectionLabel = new Label("Narration Queue");
+        queueSectionLabel.setStyle("-fx-font-weight: bold;");
+
+        queueLabel = new Label();
+        updateQueueLabel();
+
+        Label prefetchDepthLabel = new Label("Prefetch items:");
+        prefetchDepthSpinner = new Spinner<>(0, 5, 1);
+        prefetchDepthSpinner.setPrefWidth(80);
+        prefetchDepthSpinner.valueProperty().addListener((obs, old, val) -> narrationQueue.setPrefetchDepth(val));
+        HBox prefetchDepthBox = new HBox(5, prefetchDepthLabel, prefetchDepthSpinner);
+        prefetchDepthBox.setAlignment(Pos.CENTER_LEFT);
+
+        Label prefetchCapLabel = new Label("Prefetch cap (MB):");
+        prefetchCapSpinner = new Spinner<>(8, 1024, 64, 8);
+        prefetchCapSpinner.setPrefWidth(80);
+        prefetchCapSpinner.valueProperty().addListener((obs, old, val) -> narrationQueue.setMemoryCap(val * 1024L * 1024L));
+        HBox prefetchCapBox = new HBox(5, prefetchCapLabel, prefetchCapSpinner);
+        prefetchCapBox.setAlignment(Pos.CENTER_LEFT);
+
+        Button clearQueueBtn = new Button("Clear Queue");
+        clearQueueBtn.setMaxWidth(Double.MAX_VALUE);
+        clearQueueBtn.setOnAction(e -> stopSpeaking());
+
         settingsPanel.getChildren().addAll(
             ocrSectionLabel, new Separator(),
             tesseractLabel, tesseractBox,
@@ -424,11 +632,28 @@ public class App extends Application {
             voiceLabel, voiceSelector,
             piperPathLabel, piperPathBox,
             downloadVoiceBtn,
+            warmVoicesBox,
+            voiceMemoryBox,
+            idleUnloadBox,
+            dialogueModeCheck,
+            chunkedModeCheck,
+            highlightLabel, highlightSelector,
             speedLabel, speedSlider,
-            volumeLabel, volumeSlider
+            volumeLabel, volumeSlider,
+            new Separator(),
+            queueSectionLabel, new Separator(),
+            queueLabel,
+            prefetchDepthBox,
+            prefetchCapBox,
+            clearQueueBtn
         );
 
-        return settingsPanel;
+        // The panel is taller than the minimum window height
+        ScrollPane settingsScroll = new ScrollPane(settingsPanel);
+        settingsScroll.setFitToWidth(true);
+        settingsScroll.setHbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
+        settingsScroll.getStyleClass().add("settings-scroll");
+        return settingsScroll;
     }
 
     private String getDefaultTesseractPath() {
@@ -623,111 +848,349 @@ public class App extends Application {
     }
 
     private void startSpeaking() {
-        String text = textArea.getText().trim();
-        if (text.isEmpty()) {
+        if (book != null && textArea.getText().equals(bookChapterText) && !bookChapterText.isEmpty()) {
+            // Reading the open book: continues with the following chapters
+            enqueue(bookItem(book, bookChapter, bookChapterText));
+            return;
+        }
+        NarrationQueue.Item item = editorItem();
+        if (item == null) {
             statusLabel.setText("No text to speak");
             return;
         }
 
-        isSpeaking = true;
-        playButton.setText("Pause");
-        stopButton.setDisable(false);
-        statusLabel.setText("Speaking...");
-        progressBar.setProgress(-1);
+        enqueue(item);
+    }
 
-        Task<Void> speakTask = new Task<>() {
-            @Override
-            protected Void call() throws Exception {
-                speakText(text);
-                return null;
-            }
+    private void queueEditorText() {
+        NarrationQueue.Item item = editorItem();
+        if (item == null) {
+            statusLabel.setText("No text to queue");
+            return;
+        }
+        enqueue(item);
+    }
 
-            @Override
-            protected void succeeded() {
-                resetControls();
+    // The editor's text, trimmed, remembering where it starts for highlighting
+    private NarrationQueue.Item editorItem() {
+        String raw = textArea.getText();
+        String text = raw.trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        return new NarrationQueue.Item("Editor text", text, raw.indexOf(text));
+    }
+
+    private void queueFile(Stage stage) {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Add Text File to Queue");
+        fc.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Text and HTML Files", "*.txt", "*.md", "*.html", "*.htm", "*.xhtml"));
+        File file = fc.showOpenDialog(stage);
+        if (file != null) {
+            try {
+                String content;
+                if (isHtml(file)) {
+                    try (Book page = Book.open(file.toPath())) {
+                        content = page.chapterText(0);
+                    }
+                } else {
+                    content = Files.readString(file.toPath()).trim();
+                }
+                if (!content.isEmpty()) {
+                    enqueue(new NarrationQueue.Item(file.getName(), content));
+                }
+            } catch (IOException e) {
+                statusLabel.setText("Error loading file");
             }
+        }
+    }
 
-            @Override
-            protected void failed() {
-                Platform.runLater(() -> {
-                    statusLabel.setText("Error: " + getException().getMessage());
-                    resetControls();
-                });
+    private void enqueue(NarrationQueue.Item item) {
+        boolean wasActive = narrationQueue.isActive();
+        narrationQueue.add(item);
+        if (wasActive) {
+            statusLabel.setText("Queued: " + item.label());
+        } else {
+            isSpeaking = true;
+            playButton.setText("Pause");
+            stopButton.setDisable(false);
+            statusLabel.setText("Preparing: " + item.label());
+            progressBar.setProgress(-1);
+        }
+        updateQueueLabel();
+    }
+
+    private void updateQueueLabel() {
+        if (queueLabel != null) {
+            queueLabel.setText(String.format("Queued: %d item(s), %.1f MB prefetched",
+                narrationQueue.size(), narrationQueue.prefetchedBytes() / (1024.0 * 1024.0)));
+        }
+    }
+
+    // Runs on the prefetch thread. Piper renders to memory so the next item can be
+    // synthesized while the current one plays; the system engines only speak live.
+    private ScratchSpace.Buffer synthesizeForQueue(String text) throws Exception {
+        if (engineSelector.getValue().contains("Piper") && !isChunkedPiper() && !isStreamedDialogue()) {
+            return synthesizeWithPiper(text);
+        }
+        return null;
+    }
+
+    private void playQueueItem(NarrationQueue.Item item, ScratchSpace.Buffer audio) throws Exception {
+        TimingIndex timing = new TimingIndex(item.text().length());
+        readAlongItem = item;
+        readAlongIndex = timing;
+        try {
+            if (audio != null || !engineSelector.getValue().contains("Piper") || isStreamedDialogue()) {
+                // Chunked narration records sentences as it goes; here the item
+                // is spoken as a whole, so they are found up front
+                indexSentences(timing, item.text());
             }
-        };
+            if (audio != null) {
+                // Rendered in one piece: a single segment over the whole text
+                Wav.Format format = ChunkedNarrator.format(audio);
+                long samples = format.dataLength() / Math.max(1, format.channels() * format.bitsPerSample() / 8);
+                timing.started(timing.addSegment(0, item.text().length(), samples, format.sampleRate()), System.nanoTime());
+                wavPlayer.play(audio);
+            } else if (isStreamedDialogue()) {
+                // Each line streamed into the player as soon as it is ready
+                String piperPath = piperPathField.getText();
+                PlaybackSubscriber player = new PlaybackSubscriber(supervisor, timing);
+                dialogueStream(piperPath, item.text(), requirePiperModel(piperPath)).subscribe(metered("Playback", player));
+                player.await();
+            } else if (engineSelector.getValue().contains("Piper")) {
+                speakChunked(item.text(), timing);
+            } else if (isLinux()) {
+                // espeak-ng streamed straight into the player
+                PlaybackSubscriber player = new PlaybackSubscriber(supervisor, timing);
+                systemEngine(ProcessSupervisor.NARRATION).synthesize(speechRequest(item.text(), voiceSelector.getValue()))
+                    .subscribe(metered("Playback", player));
+                player.await();
+            } else {
+                // Live speech: timed by an estimate, in milliseconds
+                long millis = (long) (item.text().length() * SYSTEM_SECONDS_PER_CHAR * 1000 / speedSlider.getValue());
+                timing.started(timing.addSegment(0, item.text().length(), millis, 1000), System.nanoTime());
+                speakWithSystem(TextNormalizer.spoken(item.text()));
+            }
+        } finally {
+            readAlongIndex = null;
+        }
+    }
+
+    private static void indexSentences(TimingIndex timing, String text) throws IOException {
+        TextNormalizer sentences = new TextNormalizer(new StringReader(text));
+        while (sentences.next()) {
+            timing.addSentence(sentences.start(), sentences.end());
+        }
+    }
 
-        new Thread(speakTask).start();
+    // Ticker thread: hands the playhead position to the FX thread
+    private void sampleReadAlong() {
+        TimingIndex timing = readAlongIndex;
+        NarrationQueue.Item item = readAlongItem;
+        if (timing != null && item != null) {
+            readAlongUpdates.submit(new ReadAlong(item, timing.position(System.nanoTime())));
+        }
     }
 
-    private void speakText(String text) throws Exception {
-        if (engineSelector.getValue().contains("Piper")) {
-            speakWithPiper(text);
+    private void showReadAlong(ReadAlong update) {
+        if (update.item() != readAlongItem || readAlongIndex == null || !isSpeaking) {
+            return;
+        }
+        TimingIndex.Position position = update.position();
+        progressBar.setProgress(position.progress());
+        long remaining = position.remainingMillis();
+        statusLabel.setText(remaining < 0
+            ? "Speaking: " + update.item().label()
+            : String.format("Speaking: %s - %.0f%%, %d:%02d left", update.item().label(),
+                position.progress() * 100, remaining / 60000, remaining / 1000 % 60));
+        highlight(update.item(), position);
+    }
+
+    // Selects the sentence or word being spoken, if the item came from the editor
+    // and the editor still holds the same text around the playhead
+    private void highlight(NarrationQueue.Item item, TimingIndex.Position position) {
+        String mode = highlightSelector.getValue();
+        if (item.editorOffset() < 0 || "Off".equals(mode) || highlightSuspended) {
+            return;
+        }
+        if (highlighted && !isOwnHighlight()) {
+            // The user selected or moved the caret: leave their selection alone
+            highlightSuspended = true;
+            highlighted = false;
+            return;
+        }
+        String itemText = item.text();
+        String editorText = textArea.getText();
+        int base = item.editorOffset();
+        int segmentStart = position.segmentStart();
+        int segmentEnd = position.segmentEnd();
+        if (!editorText.regionMatches(base + segmentStart, itemText, segmentStart, segmentEnd - segmentStart)) {
+            return;
+        }
+
+        int offset = Math.min(position.textOffset(), Math.max(segmentStart, segmentEnd - 1));
+        int start, end;
+        if ("Word".equals(mode)) {
+            while (offset < segmentEnd - 1 && Character.isWhitespace(itemText.charAt(offset))) {
+                offset++;
+            }
+            start = offset;
+            while (start > segmentStart && !Character.isWhitespace(itemText.charAt(start - 1))) {
+                start--;
+            }
+            end = offset;
+            while (end < segmentEnd && !Character.isWhitespace(itemText.charAt(end))) {
+                end++;
+            }
         } else {
-            speakWithSystem(text);
+            start = position.sentenceStart();
+            end = position.sentenceEnd();
+        }
+        if (textArea.getAnchor() != base + start || textArea.getCaretPosition() != base + end) {
+            textArea.selectRange(base + start, base + end);
+            highlightAnchor = base + start;
+            highlightCaret = base + end;
+            highlighted = true;
         }
     }
 
-    private void speakWithPiper(String text) throws Exception {
+    private boolean isOwnHighlight() {
+        return textArea.getAnchor() == highlightAnchor && textArea.getCaretPosition() == highlightCaret;
+    }
+
+    // Chunked mode streams as it synthesizes, so there is nothing to prefetch
+    private boolean isChunkedPiper() {
+        return chunkedModeCheck.isSelected() && !dialogueModeCheck.isSelected();
+    }
+
+    // Linux: dialogue is played live into aplay line by line; elsewhere it is
+    // rendered (prefetched) whole and played as a file
+    private boolean isStreamedDialogue() {
+        return dialogueModeCheck.isSelected() && isLinux();
+    }
+
+    private void speakChunked(String text, TimingIndex timing) throws Exception {
         String piperPath = piperPathField.getText();
+        Path modelPath = requirePiperModel(piperPath);
+
+        ChunkedNarrator.Session session = chunkedNarrator.newSession(timing);
+        chunkedSession = session;
+        try {
+            ChunkedNarrator.Stats stats = chunkedNarrator.speak(session, piperPath, modelPath, text, openChunkOutput());
+            if (!session.isCancelled()) {
+                lastRunSummary = String.format("first audio %d ms, %d underrun(s), %d chunks",
+                    stats.firstAudioMillis(), stats.underruns(), stats.chunks());
+            }
+        } finally {
+            chunkedSession = null;
+        }
+    }
+
+    // Linux: one aplay fed raw PCM for gapless chunks. Elsewhere each chunk is played as a file.
+    private ChunkedNarrator.AudioOut openChunkOutput() {
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.contains("win") || os.contains("mac")) {
+            return new ChunkedNarrator.AudioOut() {
+                @Override
+                public void play(ScratchSpace.Buffer wav) throws Exception {
+                    wavPlayer.play(wav);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        return new AplayChunkOutput(supervisor);
+    }
+
+    private Path requirePiperModel(String piperPath) throws Exception {
         File piperExe = new File(piperPath);
         
         if (!piperExe.exists()) {
             throw new Exception("Piper not found. Please install Piper TTS.");
         }
 
-        String selectedVoice = voiceSelector.getValue();
-        String modelName = null;
-        for (String[] v : PIPER_VOICES) {
-            if (v[0].equals(selectedVoice)) {
-                modelName = v[1];
-                break;
-            }
-        }
-
-        Path voicesDir = Path.of(System.getProperty("user.home"), "piper", "voices");
-        Path modelPath = voicesDir.resolve(modelName + ".onnx");
+        Path modelPath = piperModelPath(voiceSelector.getValue());
         
         if (!Files.exists(modelPath)) {
             throw new Exception("Voice model not found. Click 'Download Voice' first.");
         }
+        return modelPath;
+    }
 
-        File tempWav = File.createTempFile("piper_", ".wav");
-        tempWav.deleteOnExit();
-
-        ProcessBuilder pb = new ProcessBuilder(
-            piperPath,
-            "--model", modelPath.toString(),
-            "--output_file", tempWav.getAbsolutePath()
-        );
-        pb.redirectErrorStream(true);
+    private ScratchSpace.Buffer synthesizeWithPiper(String text) throws Exception {
+        String piperPath = piperPathField.getText();
+        Path modelPath = requirePiperModel(piperPath);
+
+        Flow.Publisher<AudioChunk> audio = dialogueModeCheck.isSelected()
+            ? dialogueStream(piperPath, text, modelPath)
+            : new PiperEngine(piperWorkers, piperPath).synthesize(speechRequest(text, modelPath.toString()));
+        BufferSubscriber cache = new BufferSubscriber(scratch);
+        audio.subscribe(metered("Prefetch", cache));
+        cache.await();
+        return cache.result();
+    }
 
-        ttsProcess = pb.start();
+    private SpeechRequest speechRequest(String text, String voice) {
+        return new SpeechRequest(text, voice, speedSlider.getValue(), (int) volumeSlider.getValue());
+    }
 
-        try (OutputStream os = ttsProcess.getOutputStream()) {
-            os.write(text.getBytes());
-            os.flush();
-        }
+    private SystemEngine systemEngine(String group) {
+        return new SystemEngine(scratch, supervisor, group);
+    }
 
-        ttsProcess.waitFor();
-        playWavFile(tempWav);
+    // Instrumentation: the wrapped stream's metrics are kept under label
+    private Flow.Subscriber<AudioChunk> metered(String label, Flow.Subscriber<AudioChunk> subscriber) {
+        return new MeteredSubscriber(subscriber, metrics -> streamMetrics.put(label, metrics));
     }
 
-    private void playWavFile(File wavFile) throws Exception {
+    private static boolean isLinux() {
         String os = System.getProperty("os.name").toLowerCase();
-        ProcessBuilder pb;
+        return !os.contains("win") && !os.contains("mac");
+    }
 
-        if (os.contains("win")) {
-            pb = new ProcessBuilder("powershell", "-Command",
-                String.format("(New-Object Media.SoundPlayer '%s').PlaySync()", 
-                    wavFile.getAbsolutePath()));
-        } else if (os.contains("mac")) {
-            pb = new ProcessBuilder("afplay", wavFile.getAbsolutePath());
-        } else {
-            pb = new ProcessBuilder("aplay", wavFile.getAbsolutePath());
+    private Flow.Publisher<AudioChunk> dialogueStream(String piperPath, String text, Path narratorModel) {
+        List<DialogueRenderer.Line> lines = DialogueRenderer.parse(text);
+        
+        // Speakers take the downloaded voices in turn, the narrator's voice last
+        List<Path> available = new ArrayList<>();
+        for (String[] v : PIPER_VOICES) {
+            Path model = piperModelPath(v[0]);
+            if (Files.exists(model) && !model.equals(narratorModel)) {
+                available.add(model);
+            }
         }
+        available.add(narratorModel);
 
-        Process playProcess = pb.start();
-        playProcess.waitFor();
+        Map<String, Path> voices = new HashMap<>();
+        voices.put(null, narratorModel);
+        int next = 0;
+        for (String speaker : DialogueRenderer.speakers(lines)) {
+            voices.put(speaker, available.get(next++ % available.size()));
+        }
+        return dialogueRenderer.stream(piperPath, lines, voices);
+    }
+
+    private Path piperModelPath(String voiceLabel) {
+        String modelName = null;
+        for (String[] v : PIPER_VOICES) {
+            if (v[0].equals(voiceLabel)) {
+                modelName = v[1];
+                break;
+            }
+        }
+
+        Path voicesDir = Path.of(System.getProperty("user.home"), "piper", "voices");
+        return voicesDir.resolve(modelName + ".onnx");
+    }
+
+    // Generous upper bound for live speech: ~7 characters per second at 1.0x
+    private Duration speechDeadline(String text) {
+        return Duration.ofSeconds(15).plusMillis((long) (text.length() * 150 / speedSlider.getValue()));
     }
 
     private void speakWithSystem(String text) throws Exception {
@@ -757,14 +1220,21 @@ public class App extends Application {
                                    "-a", String.valueOf(volume * 2), text);
         }
 
-        ttsProcess = pb.start();
-        ttsProcess.waitFor();
+        ProcessSupervisor.Supervised speech = supervisor.start(ProcessSupervisor.NARRATION, pb.command().get(0), pb,
+            null, speechDeadline(text), ProcessSupervisor.QUIET_STALL_TIMEOUT);
+        speech.watchCpu();
+        speech.waitFor();
     }
 
     private void stopSpeaking() {
-        if (ttsProcess != null && ttsProcess.isAlive()) {
-            ttsProcess.destroyForcibly();
+        cancelOcrBatch();
+        bookItem = null;
+        narrationQueue.clear();
+        ChunkedNarrator.Session session = chunkedSession;
+        if (session != null) {
+            session.cancel();
         }
+        supervisor.killGroup(ProcessSupervisor.NARRATION);
         resetControls();
     }
 
@@ -773,19 +1243,36 @@ public class App extends Application {
             isSpeaking = false;
             playButton.setText("Play");
             stopButton.setDisable(true);
-            statusLabel.setText("Ready - Press F5 to capture screen");
+            String summary = lastRunSummary;
+            lastRunSummary = null;
+            statusLabel.setText(summary != null ? "Ready - last narration: " + summary : "Ready - Press F5 to capture screen");
             progressBar.setProgress(0);
+            if (highlighted && isOwnHighlight()) {
+                textArea.deselect();
+            }
+            highlighted = false;
+            highlightSuspended = false;
+            updateQueueLabel();
         });
     }
 
     private void openFile(Stage stage) {
         FileChooser fc = new FileChooser();
-        fc.setTitle("Open Text File");
-        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt", "*.md"));
+        fc.setTitle("Open File");
+        fc.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Text, E-books and HTML", "*.txt", "*.md", "*.epub", "*.html", "*.htm", "*.xhtml"),
+            new FileChooser.ExtensionFilter("Text Files", "*.txt", "*.md"),
+            new FileChooser.ExtensionFilter("EPUB E-books", "*.epub"),
+            new FileChooser.ExtensionFilter("HTML Files", "*.html", "*.htm", "*.xhtml"));
         File file = fc.showOpenDialog(stage);
         if (file != null) {
+            if (Book.isEpub(file.toPath()) || isHtml(file)) {
+                openBook(file);
+                return;
+            }
             try {
                 String content = Files.readString(file.toPath());
+                closeBook();
                 textArea.setText(content);
                 statusLabel.setText("Loaded: " + file.getName());
             } catch (IOException e) {
@@ -794,6 +1281,234 @@ public class App extends Application {
         }
     }
 
+    // Scanned pages: recognized in parallel, then added to the editor and the
+    // narration queue in page order as each next page becomes available
+    private void openImagesForOcr(Stage stage) {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Open Images for OCR");
+        fc.getExtensionFilters().add(
+            new FileChooser.ExtensionFilter("Images", "*.png", "*.jpg", "*.jpeg", "*.tif", "*.tiff"));
+        List<File> files = fc.showOpenMultipleDialog(stage);
+        if (files == null || files.isEmpty()) {
+            return;
+        }
+
+        cancelOcrBatch();
+        closeBook();
+        textArea.clear();
+        List<Path> paths = new ArrayList<>();
+        for (File file : files) {
+            paths.add(file.toPath());
+        }
+
+        OcrBatch[] self = new OcrBatch[1];
+        OcrBatch batch = new OcrBatch(ocr(), scratch, tesseractPathField.getText(), paths, new OcrBatch.Listener() {
+            @Override
+            public void pageDone(OcrBatch.Page page) {
+                Platform.runLater(() -> {
+                    if (ocrBatch == self[0]) {
+                        showOcrPage(page);
+                    }
+                });
+            }
+
+            @Override
+            public void finished(int pages, boolean cancelled) {
+                Platform.runLater(() -> {
+                    if (ocrBatch == self[0]) {
+                        ocrBatch = null;
+                        statusLabel.setText(String.format("OCR %s - %d page(s)", cancelled ? "stopped" : "complete", pages));
+                    }
+                });
+            }
+        });
+        self[0] = batch;
+        ocrBatch = batch;
+        statusLabel.setText(String.format("Recognizing %d file(s) on %d workers...", files.size(), batch.workers()));
+        progressBar.setProgress(-1);
+        batch.start();
+    }
+
+    private void showOcrPage(OcrBatch.Page page) {
+        if (page.error() != null) {
+            statusLabel.setText("OCR failed for " + page.source() + ": " + page.error().getMessage());
+            return;
+        }
+        if (page.text().isEmpty()) {
+            return;
+        }
+        int offset = textArea.getLength();
+        String separator = offset == 0 ? "" : "\n\n";
+        textArea.appendText(separator + page.text());
+        enqueue(new NarrationQueue.Item(page.source(), page.text(), offset + separator.length()));
+    }
+
+    private void cancelOcrBatch() {
+        OcrBatch batch = ocrBatch;
+        ocrBatch = null;
+        if (batch != null) {
+            batch.cancel();
+        }
+    }
+
+    private static boolean isHtml(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".html") || name.endsWith(".htm") || name.endsWith(".xhtml");
+    }
+
+    private HBox createChapterBar() {
+        chapterSelector = new ComboBox<>();
+        chapterSelector.setMaxWidth(Double.MAX_VALUE);
+        chapterSelector.setOnAction(e -> {
+            int index = chapterSelector.getSelectionModel().getSelectedIndex();
+            if (index >= 0 && index != bookChapter) {
+                showChapter(index);
+            }
+        });
+        Button prevButton = new Button("Previous");
+        prevButton.setOnAction(e -> {
+            if (book != null && bookChapter > 0) {
+                showChapter(bookChapter - 1);
+            }
+        });
+        Button nextButton = new Button("Next");
+        nextButton.setOnAction(e -> {
+            if (book != null && bookChapter + 1 < book.chapterCount()) {
+                showChapter(bookChapter + 1);
+            }
+        });
+        HBox bar = new HBox(5, new Label("Chapter:"), chapterSelector, prevButton, nextButton);
+        bar.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(chapterSelector, Priority.ALWAYS);
+        bar.setVisible(false);
+        bar.setManaged(false);
+        return bar;
+    }
+
+    // Reads the table of contents and the first chapter only
+    private void openBook(File file) {
+        statusLabel.setText("Opening " + file.getName() + "...");
+        progressBar.setProgress(-1);
+        Task<Book> openTask = new Task<>() {
+            @Override
+            protected Book call() throws Exception {
+                return Book.open(file.toPath());
+            }
+        };
+        openTask.setOnSucceeded(e -> {
+            closeBook();
+            book = openTask.getValue();
+            List<String> titles = new ArrayList<>();
+            for (int i = 0; i < book.chapterCount(); i++) {
+                titles.add(book.chapter(i).title());
+            }
+            chapterSelector.getItems().setAll(titles);
+            boolean chapters = book.chapterCount() > 1;
+            chapterBar.setVisible(chapters);
+            chapterBar.setManaged(chapters);
+            showChapter(0);
+        });
+        openTask.setOnFailed(e -> {
+            statusLabel.setText("Error opening " + file.getName() + ": " + openTask.getException().getMessage());
+            progressBar.setProgress(0);
+        });
+        new Thread(openTask).start();
+    }
+
+    private void showChapter(int index) {
+        Book current = book;
+        Task<String> chapterTask = new Task<>() {
+            @Override
+            protected String call() throws Exception {
+                return current.chapterText(index);
+            }
+        };
+        chapterTask.setOnSucceeded(e -> {
+            if (book == current) {
+                displayChapter(index, chapterTask.getValue());
+                if (!isSpeaking) {
+                    progressBar.setProgress(0);
+                }
+            }
+        });
+        chapterTask.setOnFailed(e -> statusLabel.setText("Error reading chapter: " + chapterTask.getException().getMessage()));
+        new Thread(chapterTask).start();
+    }
+
+    private void displayChapter(int index, String text) {
+        bookChapter = index;
+        bookChapterText = text;
+        if (!textArea.getText().equals(text)) {
+            textArea.setText(text);
+        }
+        chapterSelector.getSelectionModel().select(index);
+        statusLabel.setText(book.chapterCount() > 1
+            ? String.format("%s - %s (%d/%d)", book.title(), book.chapter(index).title(), index + 1, book.chapterCount())
+            : "Loaded: " + book.title());
+    }
+
+    private NarrationQueue.Item bookItem(Book current, int chapter, String text) {
+        String label = current.chapterCount() > 1 ? current.title() + " - " + current.chapter(chapter).title() : current.title();
+        // Shown in the editor from the start when it plays, so highlighting works
+        NarrationQueue.Item item = new NarrationQueue.Item(label, text, 0);
+        bookItemChapter = chapter;
+        bookItem = item;
+        return item;
+    }
+
+    // Queue thread: a book chapter started playing. Show it, and decode and queue
+    // the next non-empty chapter so it can be prefetched while this one plays.
+    private void continueBook(NarrationQueue.Item item, int chapter) {
+        Book current = book;
+        Platform.runLater(() -> {
+            if (book == current && bookItem != null) {
+                displayChapter(chapter, item.text());
+            }
+        });
+        Task<Integer> nextTask = new Task<>() {
+            private String text;
+
+            @Override
+            protected Integer call() throws Exception {
+                for (int next = chapter + 1; next < current.chapterCount(); next++) {
+                    text = current.chapterText(next);
+                    if (!text.isEmpty()) {
+                        return next;
+                    }
+                }
+                return -1;
+            }
+
+            @Override
+            protected void succeeded() {
+                int next = getValue();
+                // Still reading this book, and nothing was stopped in the meantime
+                if (next >= 0 && book == current && bookItem == item) {
+                    enqueue(bookItem(current, next, text));
+                }
+            }
+        };
+        nextTask.setOnFailed(e -> statusLabel.setText("Error reading chapter: " + nextTask.getException().getMessage()));
+        new Thread(nextTask).start();
+    }
+
+    private void closeBook() {
+        Book current = book;
+        book = null;
+        bookItem = null;
+        bookChapter = -1;
+        bookChapterText = null;
+        chapterBar.setVisible(false);
+        chapterBar.setManaged(false);
+        chapterSelector.getItems().clear();
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
     private void exportAudio(Stage stage) {
         String text = textArea.getText().trim();
         if (text.isEmpty()) {
@@ -811,10 +1526,11 @@ public class App extends Application {
             statusLabel.setText("Exporting...");
             progressBar.setProgress(-1);
 
+            FxUpdateCoalescer<Double> exportProgress = new FxUpdateCoalescer<>(progressBar::setProgress);
             Task<Void> exportTask = new Task<>() {
                 @Override
                 protected Void call() throws Exception {
-                    exportToWav(text, file);
+                    exportToWav(text, file, end -> exportProgress.submit((double) end / text.length()));
                     return null;
                 }
 
@@ -839,71 +1555,21 @@ public class App extends Application {
         }
     }
 
-    private void exportToWav(String text, File outputFile) throws Exception {
+    private void exportToWav(String text, File outputFile, IntConsumer progress) throws Exception {
+        Flow.Publisher<AudioChunk> audio;
         if (engineSelector.getValue().contains("Piper")) {
-            exportWithPiper(text, outputFile);
+            String piperPath = piperPathField.getText();
+            Path modelPath = requirePiperModel(piperPath);
+            audio = dialogueModeCheck.isSelected()
+                ? dialogueStream(piperPath, text, modelPath)
+                : new PiperEngine(piperWorkers, piperPath).synthesize(speechRequest(text, modelPath.toString()));
         } else {
-            exportWithSystem(text, outputFile);
-        }
-    }
-
-    private void exportWithPiper(String text, File outputFile) throws Exception {
-        String piperPath = piperPathField.getText();
-        File piperExe = new File(piperPath);
-        
-        if (!piperExe.exists()) {
-            throw new Exception("Piper not found");
+            audio = systemEngine(ProcessSupervisor.EXPORT).synthesize(speechRequest(text, voiceSelector.getValue()));
         }
 
-        String selectedVoice = voiceSelector.getValue();
-        String modelName = null;
-        for (String[] v : PIPER_VOICES) {
-            if (v[0].equals(selectedVoice)) {
-                modelName = v[1];
-                break;
-            }
-        }
-
-        Path voicesDir = Path.of(System.getProperty("user.home"), "piper", "voices");
-        Path modelPath = voicesDir.resolve(modelName + ".onnx");
-
-        ProcessBuilder pb = new ProcessBuilder(
-            piperPath,
-            "--model", modelPath.toString(),
-            "--output_file", outputFile.getAbsolutePath()
-        );
-
-        Process p = pb.start();
-        try (OutputStream os = p.getOutputStream()) {
-            os.write(text.getBytes());
-            os.flush();
-        }
-        p.waitFor();
-    }
-
-    private void exportWithSystem(String text, File outputFile) throws Exception {
-        String os = System.getProperty("os.name").toLowerCase();
-        ProcessBuilder pb;
-
-        if (os.contains("win")) {
-            String script = String.format(
-                "Add-Type -AssemblyName System.Speech; " +
-                "$synth = New-Object System.Speech.Synthesis.SpeechSynthesizer; " +
-                "$synth.SetOutputToWaveFile('%s'); " +
-                "$synth.Speak('%s'); " +
-                "$synth.Dispose()",
-                outputFile.getAbsolutePath().replace("\\", "\\\\"),
-                text.replace("'", "''").replace("\n", " ")
-            );
-            pb = new ProcessBuilder("powershell", "-Command", script);
-        } else if (os.contains("mac")) {
-            pb = new ProcessBuilder("say", "-o", outputFile.getAbsolutePath(), "--data-format=LEF32@22050", text);
-        } else {
-            pb = new ProcessBuilder("espeak-ng", "-w", outputFile.getAbsolutePath(), text);
-        }
-
-        Process p = pb.start();
-        p.waitFor();
+        WavFileSubscriber file = new WavFileSubscriber(outputFile.toPath(), progress);
+        audio.subscribe(metered("Export", file));
+        file.await();
     }
 
     private void showPiperSetupDialog() {
@@ -930,6 +1596,47 @@ public class App extends Application {
         alert.showAndWait();
     }
 
+    private void showDiagnostics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Startup:\n");
+        sb.append(String.format("  First frame: %d ms%n", firstFrameMillis));
+        sb.append(String.format("  Interactive: %d ms%n", interactiveMillis));
+        sb.append("  OCR stack loaded: ").append(ocrService != null ? "yes" : "no").append("\n");
+        sb.append("\nScratch space:\n");
+        sb.append(String.format("  Memory in use: %.1f of %.1f MB pooled%n",
+            scratch.memoryInUse() / (1024.0 * 1024.0), scratch.memoryReserved() / (1024.0 * 1024.0)));
+        sb.append(String.format("  Disk in use: %.1f MB (%d spills)%n",
+            scratch.diskInUse() / (1024.0 * 1024.0), scratch.spillCount()));
+        sb.append("\nSubprocesses:\n");
+        sb.append(supervisor.describe());
+        sb.append(piperWorkers.describe());
+        sb.append("\nChunked streaming:\n");
+        ChunkedNarrator.Stats stats = chunkedNarrator.lastStats();
+        if (stats != null) {
+            sb.append(String.format("  Last run: first audio %d ms, %d underrun(s)%n", stats.firstAudioMillis(), stats.underruns()));
+            sb.append(String.format("  Chunks: %d (%d-%d chars)%n", stats.chunks(), stats.minChunk(), stats.maxChunk()));
+        }
+        chunkedNarrator.realTimeFactors().forEach((model, rtf) ->
+            sb.append(String.format("  %s: real-time factor %.2f%n", model.getFileName(), rtf)));
+        if (!streamMetrics.isEmpty()) {
+            sb.append("\nEngine streams:\n");
+            streamMetrics.forEach((label, m) -> sb.append(String.format(
+                "  %s: first chunk %d ms, %d chunks, %.1f s audio in %.1f s (RTF %.2f)%s%n",
+                label, m.firstChunkMillis(), m.chunks(), m.audioSeconds(), m.elapsedMillis() / 1000.0,
+                m.realTimeFactor(), m.error() != null ? ", failed" : "")));
+        }
+        sb.append("\nNarration queue:\n");
+        sb.append(String.format("  Pending items: %d%n", narrationQueue.size()));
+        sb.append(String.format("  Prefetched audio: %.1f MB%n", narrationQueue.prefetchedBytes() / (1024.0 * 1024.0)));
+        
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Diagnostics");
+        alert.setHeaderText("JNarrator FX Diagnostics");
+        alert.setContentText(sb.toString());
+        alert.getDialogPane().setMinWidth(450);
+        alert.showAndWait();
+    }
+
     private void showAbout() {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("About JNarrator FX");
@@ -947,6 +1654,16 @@ public class App extends Application {
         alert.showAndWait();
     }
 
+    @Override
+    public void stop() {
+        narrationQueue.clear();
+        readAlongTicker.shutdownNow();
+        closeBook();
+        cancelOcrBatch();
+        piperWorkers.close();
+        supervisor.killAll();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,459 @@
+package com.narrator;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// An EPUB or HTML document opened for reading. Opening an EPUB only reads the zip
+// directory, the package file and the table of contents; a chapter is decoded
+// from the archive when it is asked for, so the cost of getting to the first
+// chapter doesn't grow with the book. An HTML file is a book with one chapter.
+final class Book implements AutoCloseable {
+
+    record Chapter(String title, String path) {}
+
+    // Their end starts a new paragraph
+    private static final Set<String> BLOCKS = Set.of(
+        "p", "div", "section", "article", "aside", "blockquote", "li", "dt", "dd",
+        "h1", "h2", "h3", "h4", "h5", "h6", "tr", "table", "ul", "ol", "dl",
+        "pre", "figure", "figcaption", "header", "footer", "hr", "body");
+
+    // Never spoken
+    private static final Set<String> SKIPPED = Set.of("head", "script", "style", "svg", "math", "rt", "rp");
+
+    // How far into a document an encoding declaration is looked for (as HTML's prescan)
+    private static final int PRESCAN_BYTES = 1024;
+    private static final Pattern DECLARED_CHARSET = Pattern.compile(
+        "<\\?xml[^>]*?encoding\\s*=\\s*[\"']([\\w.:-]+)|<meta[^>]*?charset\\s*=\\s*[\"']?([\\w.:-]+)",
+        Pattern.CASE_INSENSITIVE);
+
+    private final Path file;
+    private final ZipFile zip;
+    private final String title;
+    private final List<Chapter> chapters;
+
+    private Book(Path file, ZipFile zip, String title, List<Chapter> chapters) {
+        this.file = file;
+        this.zip = zip;
+        this.title = title;
+        this.chapters = chapters;
+    }
+
+    static boolean isEpub(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".epub");
+    }
+
+    static Book open(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        if (!isEpub(file)) {
+            return new Book(file, null, name, List.of(new Chapter(name, null)));
+        }
+        ZipFile zip = new ZipFile(file.toFile(), StandardCharsets.UTF_8);
+        try {
+            return openEpub(file, zip);
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    String title() {
+        return title;
+    }
+
+    int chapterCount() {
+        return chapters.size();
+    }
+
+    Chapter chapter(int index) {
+        return chapters.get(index);
+    }
+
+    // Decodes one chapter to plain text: paragraphs separated by blank lines
+    String chapterText(int index) throws IOException {
+        Chapter chapter = chapters.get(index);
+        try (InputStream in = new BufferedInputStream(zip == null ? Files.newInputStream(file) : entry(zip, chapter.path))) {
+            return text(new InputStreamReader(in, charset(in)));
+        }
+    }
+
+    // The encoding given by a byte order mark, the XML declaration or a <meta>
+    // charset within the first PRESCAN_BYTES, UTF-8 if there is none. Skips a
+    // UTF-8 byte order mark; in must support mark().
+    static Charset charset(InputStream in) throws IOException {
+        in.mark(PRESCAN_BYTES);
+        byte[] head = in.readNBytes(PRESCAN_BYTES);
+        in.reset();
+        if (head.length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            in.skipNBytes(3);
+            return StandardCharsets.UTF_8;
+        }
+        if (head.length >= 2 && ((head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF
+                || (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE)) {
+            // The UTF-16 decoder reads the byte order mark itself
+            return StandardCharsets.UTF_16;
+        }
+        Matcher declared = DECLARED_CHARSET.matcher(new String(head, StandardCharsets.ISO_8859_1));
+        if (declared.find()) {
+            String name = declared.group(1) != null ? declared.group(1) : declared.group(2);
+            try {
+                Charset charset = Charset.forName(name);
+                if (charset.equals(StandardCharsets.ISO_8859_1) || charset.equals(StandardCharsets.US_ASCII)) {
+                    // What browsers do: pages labelled Latin-1 are written in windows-1252
+                    return Charset.forName("windows-1252");
+                }
+                // A declaration readable as ASCII can't be in UTF-16 or UTF-32
+                if (!charset.name().startsWith("UTF-16") && !charset.name().startsWith("UTF-32")) {
+                    return charset;
+                }
+            } catch (IllegalArgumentException e) {
+                // Unknown or unsupported name: UTF-8
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zip != null) {
+            zip.close();
+        }
+    }
+
+    static String text(Reader in) throws IOException {
+        TextExtractor extractor = new TextExtractor();
+        MarkupScanner.scan(in, extractor);
+        return extractor.result();
+    }
+
+    private static Book openEpub(Path file, ZipFile zip) throws IOException {
+        // META-INF/container.xml names the package (.opf) file
+        String[] opfPath = new String[1];
+        scan(zip, "META-INF/container.xml", new Tags() {
+            @Override
+            public void startTag(String name, Map<String, String> attributes, boolean selfClosing) {
+                if (name.equals("rootfile") && opfPath[0] == null) {
+                    opfPath[0] = attributes.get("full-path");
+                }
+            }
+        });
+        if (opfPath[0] == null) {
+            throw new IOException("Not an EPUB: no package file");
+        }
+
+        PackageReader opf = new PackageReader();
+        scan(zip, opfPath[0], opf);
+        String base = parent(opfPath[0]);
+
+        // Chapter titles from the table of contents, if there is one
+        Map<String, String> titles = new HashMap<>();
+        String tocHref = opf.navHref != null ? opf.navHref : opf.manifest.get(opf.ncxId);
+        if (tocHref != null) {
+            String tocPath = resolve(base, tocHref);
+            TocReader toc = new TocReader(parent(tocPath), titles);
+            scan(zip, tocPath, toc);
+        }
+
+        List<Chapter> chapters = new ArrayList<>();
+        for (String idref : opf.spine) {
+            String href = opf.manifest.get(idref);
+            if (href == null) {
+                continue;
+            }
+            String path = resolve(base, href);
+            String chapterTitle = titles.get(path);
+            chapters.add(new Chapter(chapterTitle != null ? chapterTitle : "Section " + (chapters.size() + 1), path));
+        }
+        if (chapters.isEmpty()) {
+            throw new IOException("EPUB has no readable chapters");
+        }
+        String title = opf.title.length() > 0 ? opf.title.toString().trim() : file.getFileName().toString();
+        return new Book(file, zip, title, chapters);
+    }
+
+    private static InputStream entry(ZipFile zip, String path) throws IOException {
+        ZipEntry entry = zip.getEntry(path);
+        if (entry == null) {
+            throw new IOException("Missing from EPUB: " + path);
+        }
+        return zip.getInputStream(entry);
+    }
+
+    private static void scan(ZipFile zip, String path, MarkupScanner.Handler handler) throws IOException {
+        try (Reader in = new InputStreamReader(entry(zip, path), StandardCharsets.UTF_8)) {
+            MarkupScanner.scan(in, handler);
+        }
+    }
+
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash + 1);
+    }
+
+    // Resolves an href against a directory inside the archive: drops the
+    // fragment, decodes %XX escapes and folds "." and ".." segments
+    static String resolve(String base, String href) {
+        int hash = href.indexOf('#');
+        if (hash >= 0) {
+            href = href.substring(0, hash);
+        }
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : (base + percentDecode(href)).split("/")) {
+            if (segment.equals("..")) {
+                segments.pollLast();
+            } else if (!segment.isEmpty() && !segment.equals(".")) {
+                segments.addLast(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    private static String percentDecode(String s) {
+        if (s.indexOf('%') < 0) {
+            return s;
+        }
+        // Escaped bytes are collected so multi-byte UTF-8 sequences decode together
+        StringBuilder out = new StringBuilder(s.length());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '%' && i + 2 < s.length()) {
+                int value = Character.digit(s.charAt(i + 1), 16) << 4 | Character.digit(s.charAt(i + 2), 16);
+                if (value >= 0) {
+                    bytes.write(value);
+                    i += 2;
+                    continue;
+                }
+            }
+            if (bytes.size() > 0) {
+                out.append(bytes.toString(StandardCharsets.UTF_8));
+                bytes.reset();
+            }
+            out.append(c);
+        }
+        return out.append(bytes.toString(StandardCharsets.UTF_8)).toString();
+    }
+
+    // Handler for callers that only look at start tags
+    private abstract static class Tags implements MarkupScanner.Handler {
+        @Override
+        public void endTag(String name) {
+        }
+
+        @Override
+        public void text(CharSequence text) {
+        }
+    }
+
+    // The .opf file: title, manifest (id -> href) and spine (reading order)
+    private static final class PackageReader implements MarkupScanner.Handler {
+        final Map<String, String> manifest = new HashMap<>();
+        final List<String> spine = new ArrayList<>();
+        final StringBuilder title = new StringBuilder();
+        String ncxId;
+        String navHref;
+        private boolean inTitle;
+        private boolean titleDone;
+
+        @Override
+        public void startTag(String name, Map<String, String> attributes, boolean selfClosing) {
+            switch (name) {
+                case "title" -> inTitle = !titleDone;
+                case "item" -> {
+                    String id = attributes.get("id");
+                    String href = attributes.get("href");
+                    if (id != null && href != null) {
+                        manifest.put(id, href);
+                        String properties = attributes.getOrDefault("properties", "");
+                        if (properties.contains("nav")) {
+                            navHref = href;
+                        }
+                    }
+                }
+                case "spine" -> ncxId = attributes.get("toc");
+                case "itemref" -> {
+                    if (!"no".equals(attributes.get("linear")) && attributes.get("idref") != null) {
+                        spine.add(attributes.get("idref"));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void endTag(String name) {
+            if (name.equals("title") && inTitle) {
+                inTitle = false;
+                titleDone = true;
+            }
+        }
+
+        @Override
+        public void text(CharSequence text) {
+            if (inTitle) {
+                title.append(text);
+            }
+        }
+    }
+
+    // EPUB 2 toc.ncx (navPoint: navLabel text + content src) or EPUB 3 nav
+    // document (a href + link text). The first label for a file wins.
+    private static final class TocReader implements MarkupScanner.Handler {
+        private final String base;
+        private final Map<String, String> titles;
+        private final StringBuilder label = new StringBuilder();
+        private boolean inLabel;
+        private String pendingLabel;
+        private String linkPath;
+
+        TocReader(String base, Map<String, String> titles) {
+            this.base = base;
+            this.titles = titles;
+        }
+
+        @Override
+        public void startTag(String name, Map<String, String> attributes, boolean selfClosing) {
+            switch (name) {
+                case "navlabel" -> {
+                    inLabel = true;
+                    label.setLength(0);
+                }
+                case "content" -> {
+                    String src = attributes.get("src");
+                    if (src != null && pendingLabel != null) {
+                        titles.putIfAbsent(resolve(base, src), pendingLabel);
+                        pendingLabel = null;
+                    }
+                }
+                case "a" -> {
+                    String href = attributes.get("href");
+                    if (href != null) {
+                        linkPath = resolve(base, href);
+                        inLabel = true;
+                        label.setLength(0);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void endTag(String name) {
+            if (name.equals("navlabel")) {
+                inLabel = false;
+                pendingLabel = collapse(label);
+            } else if (name.equals("a") && linkPath != null) {
+                inLabel = false;
+                String text = collapse(label);
+                if (!text.isEmpty()) {
+                    titles.putIfAbsent(linkPath, text);
+                }
+                linkPath = null;
+            }
+        }
+
+        @Override
+        public void text(CharSequence text) {
+            if (inLabel) {
+                label.append(text);
+            }
+        }
+
+        private static String collapse(CharSequence s) {
+            return s.toString().replaceAll("\\s+", " ").trim();
+        }
+    }
+
+    // Collects the visible text: whitespace collapsed inside paragraphs, a blank
+    // line between blocks, line breaks kept for <br>
+    private static final class TextExtractor implements MarkupScanner.Handler {
+        private final StringBuilder out = new StringBuilder();
+        private int skipDepth;
+        private boolean pendingSpace;
+
+        @Override
+        public void startTag(String name, Map<String, String> attributes, boolean selfClosing) {
+            if (SKIPPED.contains(name)) {
+                if (!selfClosing) {
+                    skipDepth++;
+                }
+            } else if (name.equals("br")) {
+                lineBreak("\n");
+            } else if (BLOCKS.contains(name)) {
+                lineBreak("\n\n");
+            }
+        }
+
+        @Override
+        public void endTag(String name) {
+            if (SKIPPED.contains(name)) {
+                skipDepth = Math.max(0, skipDepth - 1);
+            } else if (BLOCKS.contains(name)) {
+                lineBreak("\n\n");
+            }
+        }
+
+        @Override
+        public void text(CharSequence text) {
+            if (skipDepth > 0) {
+                return;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c) || c == '\u00A0') {
+                    pendingSpace = true;
+                } else {
+                    if (pendingSpace && out.length() > 0 && !Character.isWhitespace(out.charAt(out.length() - 1))) {
+                        out.append(' ');
+                    }
+                    pendingSpace = false;
+                    out.append(c);
+                }
+            }
+        }
+
+        private void lineBreak(String separator) {
+            pendingSpace = false;
+            if (out.length() == 0) {
+                return;
+            }
+            // Trim trailing spaces, then make sure the separator is there (not twice)
+            int end = out.length();
+            while (end > 0 && out.charAt(end - 1) == ' ') {
+                end--;
+            }
+            out.setLength(end);
+            int newlines = 0;
+            while (newlines < end && out.charAt(end - 1 - newlines) == '\n') {
+                newlines++;
+            }
+            for (int i = newlines; i < separator.length(); i++) {
+                out.append('\n');
+            }
+        }
+
+        String result() {
+            return out.toString().trim();
+        }
+    }
+}
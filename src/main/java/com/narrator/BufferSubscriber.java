@@ -0,0 +1,62 @@
+package com.narrator;
+
+import com.narrator.engine.AudioChunk;
+import com.narrator.engine.AudioFormat;
+import com.narrator.engine.PcmSubscriber;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Caches a stream as one WAV in scratch space, e.g. for the narration queue's
+// prefetch. The buffer belongs to the caller once the stream has completed.
+final class BufferSubscriber extends PcmSubscriber {
+
+    private static final int WINDOW = 4;
+
+    private final ScratchSpace scratch;
+    private ScratchSpace.Buffer buffer;
+    private AudioFormat format;
+    private long dataLength;
+
+    BufferSubscriber(ScratchSpace scratch) {
+        super(WINDOW);
+        this.scratch = scratch;
+    }
+
+    @Override
+    protected void consume(AudioChunk chunk) throws IOException {
+        if (buffer == null) {
+            format = chunk.format();
+            buffer = scratch.allocate(".wav");
+            buffer.append(ByteBuffer.wrap(header(0)));
+        } else if (!format.equals(chunk.format())) {
+            throw new IOException("Audio format changed mid-stream");
+        }
+        buffer.append(ByteBuffer.wrap(chunk.pcm()));
+        dataLength += chunk.pcm().length;
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Engine produced no audio");
+        }
+        buffer.patch(0, header(dataLength));
+    }
+
+    @Override
+    protected void abort(Throwable cause) {
+        if (buffer != null) {
+            buffer.close();
+        }
+    }
+
+    // Only valid after completion
+    ScratchSpace.Buffer result() {
+        return buffer;
+    }
+
+    private byte[] header(long length) {
+        return Wav.header(format.sampleRate(), format.channels(), format.bitsPerSample(), length);
+    }
+}
@@ -0,0 +1,282 @@
+package com.narrator;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Chunked Piper narration. Text is cut at sentence boundaries into chunks whose
+// size follows the measured real-time factor (synthesis time / audio time) of the
+// voice and the amount of audio already buffered ahead of the playhead: the first
+// chunk is small so audio starts quickly, chunks grow while the buffer fills, and
+// shrink again when the next chunk would not be ready before the buffer runs dry.
+final class ChunkedNarrator {
+
+    // Plays one WAV chunk. May return before the audio has finished (streaming
+    // players) or after (file players); the narrator only relies on wall time.
+    interface AudioOut extends AutoCloseable {
+        void play(ScratchSpace.Buffer wav) throws Exception;
+
+        @Override
+        void close() throws Exception;
+    }
+
+    record Stats(long firstAudioMillis, int underruns, int chunks, int minChunk, int maxChunk, double realTimeFactor) {}
+
+    static final int FIRST_CHUNK_CHARS = 80;
+    static final int MIN_CHUNK_CHARS = 40;
+    static final int MAX_CHUNK_CHARS = 1500;
+
+    // Use at most this share of the buffered audio for synthesizing the next chunk
+    private static final double SAFETY = 0.6;
+    // Don't run further ahead than this, it only costs memory
+    private static final double MAX_AHEAD_SECONDS = 60;
+    private static final long UNDERRUN_TOLERANCE_NANOS = 50_000_000L;
+
+    // Starting guesses until a voice has been measured
+    private static final double DEFAULT_RTF = 0.5;
+    private static final double DEFAULT_SECONDS_PER_CHAR = 0.065;
+
+    private final PiperWorkers workers;
+    private final Map<Path, Double> realTimeFactors = new ConcurrentHashMap<>();
+    private final Map<Path, Double> secondsPerChar = new ConcurrentHashMap<>();
+    private volatile Stats lastStats;
+
+    ChunkedNarrator(PiperWorkers workers) {
+        this.workers = workers;
+    }
+
+    Stats lastStats() {
+        return lastStats;
+    }
+
+    Map<Path, Double> realTimeFactors() {
+        return realTimeFactors;
+    }
+
+    final class Session {
+        private final TimingIndex timing;
+        private final BlockingQueue<Chunk> ready = new LinkedBlockingQueue<>();
+        private volatile boolean cancelled;
+        // Why the output stopped, if it was not cancelled
+        private volatile Exception failure;
+        private volatile Future<ScratchSpace.Buffer> synthesizing;
+
+        // Playhead bookkeeping, written by the output thread
+        private volatile long playEndNanos;
+        private final AtomicLong queuedNanos = new AtomicLong();
+        private volatile long firstAudioNanos;
+        private volatile int underruns;
+
+        private Session(TimingIndex timing) {
+            this.timing = timing;
+        }
+
+        void cancel() {
+            cancelled = true;
+            Future<ScratchSpace.Buffer> f = synthesizing;
+            if (f != null) {
+                f.cancel(true);
+            }
+            drain();
+            ready.offer(Chunk.END);
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        private double bufferedSeconds(long now) {
+            return (Math.max(0, playEndNanos - now) + queuedNanos.get()) / 1e9;
+        }
+
+        private void drain() {
+            Chunk chunk;
+            while ((chunk = ready.poll()) != null) {
+                if (chunk.wav != null) {
+                    chunk.wav.close();
+                }
+            }
+        }
+    }
+
+    private record Chunk(ScratchSpace.Buffer wav, long audioNanos, int segment) {
+        static final Chunk END = new Chunk(null, 0, -1);
+    }
+
+    // timing (may be null) receives one segment per chunk, stamped when it starts
+    // playing, and the range of every sentence
+    Session newSession(TimingIndex timing) {
+        return new Session(timing);
+    }
+
+    Stats speak(Session session, String piperPath, Path modelPath, String text, AudioOut out) throws Exception {
+        long startNanos = System.nanoTime();
+        // Sentences are normalized as they are needed, not up front
+        TextNormalizer sentences = new TextNormalizer(new StringReader(text));
+        boolean more = sentences.next();
+
+        Thread output = new Thread(() -> runOutput(session, out), "chunked-output");
+        output.setDaemon(true);
+        output.start();
+
+        int target = FIRST_CHUNK_CHARS;
+        int chunks = 0, minChunk = Integer.MAX_VALUE, maxChunk = 0;
+        StringBuilder spoken = new StringBuilder();
+        try {
+            while (more && !session.cancelled) {
+                // Gather whole sentences up to the target size; start and end are source offsets
+                int start = sentences.start();
+                int end;
+                spoken.setLength(0);
+                do {
+                    if (spoken.length() > 0) {
+                        spoken.append(' ');
+                    }
+                    spoken.append(sentences.text());
+                    end = sentences.end();
+                    if (session.timing != null) {
+                        session.timing.addSentence(sentences.start(), end);
+                    }
+                    more = sentences.next();
+                } while (more && spoken.length() + 1 + sentences.text().length() <= target);
+                String chunkText = spoken.toString();
+
+                // Measured by the worker; left at -1 when it included loading the model
+                long[] synthNanos = {-1};
+                session.synthesizing = workers.submit(piperPath, modelPath, chunkText, nanos -> synthNanos[0] = nanos);
+                ScratchSpace.Buffer wav;
+                try {
+                    wav = session.synthesizing.get();
+                } catch (CancellationException e) {
+                    break;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+                if (session.cancelled) {
+                    wav.close();
+                    break;
+                }
+
+                Wav.Format format = format(wav);
+                long audioNanos = format.dataLength() * 1_000_000_000L / Math.max(1, format.bytesPerSecond());
+                int segment = -1;
+                if (session.timing != null) {
+                    long samples = format.dataLength() / Math.max(1, format.channels() * format.bitsPerSample() / 8);
+                    segment = session.timing.addSegment(start, end, samples, format.sampleRate());
+                }
+                measure(modelPath, chunkText.length(), synthNanos[0], audioNanos);
+                chunks++;
+                minChunk = Math.min(minChunk, chunkText.length());
+                maxChunk = Math.max(maxChunk, chunkText.length());
+
+                session.queuedNanos.addAndGet(audioNanos);
+                session.ready.put(new Chunk(wav, audioNanos, segment));
+
+                // Hold back if far enough ahead
+                while (!session.cancelled && session.bufferedSeconds(System.nanoTime()) > MAX_AHEAD_SECONDS) {
+                    Thread.sleep(100);
+                }
+                target = nextChunkSize(modelPath, target, session.bufferedSeconds(System.nanoTime()));
+            }
+        } finally {
+            if (session.cancelled) {
+                session.drain();
+            }
+            session.ready.put(Chunk.END);
+            output.join();
+        }
+        if (session.failure != null) {
+            throw session.failure;
+        }
+
+        long firstAudio = session.firstAudioNanos == 0 ? -1
+            : TimeUnit.NANOSECONDS.toMillis(session.firstAudioNanos - startNanos);
+        Stats stats = new Stats(firstAudio, session.underruns, chunks,
+            chunks == 0 ? 0 : minChunk, maxChunk, realTimeFactors.getOrDefault(modelPath, DEFAULT_RTF));
+        lastStats = stats;
+        return stats;
+    }
+
+    private void runOutput(Session session, AudioOut out) {
+        try (out) {
+            while (true) {
+                Chunk chunk = session.ready.take();
+                if (chunk == Chunk.END || session.cancelled) {
+                    if (chunk.wav != null) {
+                        chunk.wav.close();
+                    }
+                    break;
+                }
+                try (ScratchSpace.Buffer wav = chunk.wav) {
+                    long now = System.nanoTime();
+                    if (session.firstAudioNanos == 0) {
+                        session.firstAudioNanos = now;
+                    } else if (now - session.playEndNanos > UNDERRUN_TOLERANCE_NANOS) {
+                        // The previous chunk had finished before this one was ready
+                        session.underruns++;
+                    }
+                    long playStart = Math.max(session.playEndNanos, now);
+                    if (chunk.segment >= 0) {
+                        session.timing.started(chunk.segment, playStart);
+                    }
+                    session.playEndNanos = playStart + chunk.audioNanos;
+                    session.queuedNanos.addAndGet(-chunk.audioNanos);
+                    out.play(wav);
+                }
+            }
+        } catch (Exception e) {
+            // A player killed by Stop is expected; anything else is a failure
+            // that speak() rethrows once the producer has stopped
+            if (!session.cancelled) {
+                session.failure = e;
+            }
+            session.cancel();
+        }
+    }
+
+    // How many characters the next chunk may have
+    int nextChunkSize(Path modelPath, int previous, double bufferedSeconds) {
+        double rtf = realTimeFactors.getOrDefault(modelPath, DEFAULT_RTF);
+        double spc = secondsPerChar.getOrDefault(modelPath, DEFAULT_SECONDS_PER_CHAR);
+        // Largest chunk that can be synthesized before the buffer runs out
+        int affordable = (int) (bufferedSeconds * SAFETY / Math.max(1e-3, spc * rtf));
+        if (affordable < MIN_CHUNK_CHARS) {
+            // Underrun imminent: smallest chunks until the buffer recovers
+            return MIN_CHUNK_CHARS;
+        }
+        return Math.min(MAX_CHUNK_CHARS, Math.min(previous * 2, affordable));
+    }
+
+    // synthNanos < 0: no usable synthesis time, only the audio length is learned
+    private void measure(Path modelPath, int chars, long synthNanos, long audioNanos) {
+        if (audioNanos <= 0 || chars == 0) {
+            return;
+        }
+        double spc = audioNanos / 1e9 / chars;
+        // Exponential moving average, first sample taken as is
+        secondsPerChar.merge(modelPath, spc, (old, now) -> old * 0.7 + now * 0.3);
+        if (synthNanos >= 0) {
+            double rtf = (double) synthNanos / audioNanos;
+            realTimeFactors.merge(modelPath, rtf, (old, now) -> old * 0.7 + now * 0.3);
+        }
+    }
+
+    // The WAV's format with the data length filled in
+    static Wav.Format format(ScratchSpace.Buffer wav) throws Exception {
+        try (InputStream in = wav.inputStream()) {
+            Wav.Format format = Wav.readHeader(in);
+            long length = format.dataLength() >= 0 ? format.dataLength() : wav.size() - Wav.HEADER_SIZE;
+            return new Wav.Format(format.sampleRate(), format.channels(), format.bitsPerSample(), length);
+        }
+    }
+}
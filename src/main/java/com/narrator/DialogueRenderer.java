@@ -0,0 +1,181 @@
+package com.narrator;
+
+import com.narrator.engine.AudioChunk;
+import com.narrator.engine.AudioFormat;
+import com.narrator.engine.PcmPublisher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Dialogue mode: scripts and chat logs with "Name: text" lines. Every speaker's
+// lines go to that speaker's warm Piper worker, so the voices render in parallel.
+// The audio is streamed in script order with a short pause between lines: each
+// line is emitted as soon as it and every line before it are ready.
+final class DialogueRenderer {
+
+    // start/end: the line's range in the script
+    record Line(String speaker, String text, int start, int end) {}
+
+    // "Name: text" where Name is a short label, e.g. "Alice:", "Dr. Watson:", "user_42:"
+    private static final Pattern SPEAKER_TAG =
+        Pattern.compile("^\\s*(\\p{L}[\\p{L}\\p{N} ._'-]{0,39}?)\\s*:\\s+(\\S.*)$");
+    private static final Pattern LINE_BREAK = Pattern.compile("\\R");
+    // A name only counts as a speaker once it has this many lines, so prose such
+    // as "Note: ..." or "Chapter 1: ..." stays with the narrator
+    private static final int MIN_SPEAKER_LINES = 2;
+
+    private static final long PAUSE_MILLIS = 250;
+
+    private final PiperWorkers workers;
+
+    DialogueRenderer(PiperWorkers workers) {
+        this.workers = workers;
+    }
+
+    // Untagged lines continue the previous speaker until a blank line; anything
+    // before the first tag (or after a blank line) belongs to the narrator (null).
+    static List<Line> parse(String script) {
+        Map<String, Integer> tagged = new HashMap<>();
+        for (String raw : LINE_BREAK.split(script)) {
+            Matcher m = SPEAKER_TAG.matcher(raw);
+            if (m.matches()) {
+                tagged.merge(m.group(1).trim(), 1, Integer::sum);
+            }
+        }
+
+        List<Line> lines = new ArrayList<>();
+        String speaker = null;
+        StringBuilder text = new StringBuilder();
+        int start = 0, end = 0;
+        Matcher breaks = LINE_BREAK.matcher(script);
+        int lineStart = 0;
+        while (lineStart <= script.length()) {
+            int lineEnd = script.length();
+            int next = lineEnd + 1;
+            if (breaks.find()) {
+                lineEnd = breaks.start();
+                next = breaks.end();
+            }
+            String raw = script.substring(lineStart, lineEnd);
+            Matcher m = SPEAKER_TAG.matcher(raw);
+            if (m.matches() && tagged.get(m.group(1).trim()) >= MIN_SPEAKER_LINES) {
+                flush(lines, speaker, text, start, end);
+                speaker = m.group(1).trim();
+                text.append(m.group(2).trim());
+                start = lineStart + m.start(2);
+                end = lineStart + raw.stripTrailing().length();
+            } else if (raw.isBlank()) {
+                flush(lines, speaker, text, start, end);
+                speaker = null;
+            } else {
+                if (text.length() > 0) {
+                    text.append(' ');
+                } else {
+                    start = lineStart + (raw.length() - raw.stripLeading().length());
+                }
+                text.append(raw.trim());
+                end = lineStart + raw.stripTrailing().length();
+            }
+            lineStart = next;
+        }
+        flush(lines, speaker, text, start, end);
+        return lines;
+    }
+
+    private static void flush(List<Line> lines, String speaker, StringBuilder text, int start, int end) {
+        if (text.length() > 0) {
+            lines.add(new Line(speaker, text.toString(), start, end));
+            text.setLength(0);
+        }
+    }
+
+    static Set<String> speakers(List<Line> lines) {
+        Set<String> speakers = new LinkedHashSet<>();
+        for (Line line : lines) {
+            if (line.speaker() != null) {
+                speakers.add(line.speaker());
+            }
+        }
+        return speakers;
+    }
+
+    // voices maps each speaker (and null for the narrator) to a Piper model. All
+    // lines are submitted at once; chunks carry the script range of their line.
+    Flow.Publisher<AudioChunk> stream(String piperPath, List<Line> lines, Map<String, Path> voices) {
+        return new PcmPublisher(emitter -> {
+            if (lines.isEmpty()) {
+                throw new IOException("Nothing to say");
+            }
+            List<Future<ScratchSpace.Buffer>> parts = new ArrayList<>(lines.size());
+            int consumed = 0;
+            try {
+                for (Line line : lines) {
+                    // A line that is all markup is sent as it is rather than as nothing
+                    String spoken = TextNormalizer.spoken(line.text());
+                    parts.add(workers.submit(piperPath, voices.get(line.speaker()), spoken.isEmpty() ? line.text() : spoken));
+                }
+
+                AudioFormat format = null;
+                while (consumed < parts.size()) {
+                    Line line = lines.get(consumed);
+                    ScratchSpace.Buffer wav = await(parts.get(consumed++));
+                    try (wav) {
+                        AudioFormat partFormat;
+                        try (InputStream in = wav.inputStream()) {
+                            partFormat = EngineStreams.format(Wav.readHeader(in));
+                        }
+                        if (format != null && !format.equals(partFormat)) {
+                            throw new IOException("Dialogue voices use different audio formats");
+                        }
+                        format = partFormat;
+                        try (InputStream in = wav.inputStream()) {
+                            EngineStreams.emitWav(in, line.start(), line.end(), emitter);
+                        }
+                    }
+                    if (consumed < parts.size()) {
+                        EngineStreams.emitSilence(format, PAUSE_MILLIS, line.start(), line.end(), emitter);
+                    }
+                }
+            } finally {
+                // Stopped or failed: the lines not played yet are no longer needed
+                discard(parts.subList(consumed, parts.size()));
+            }
+        }, EngineStreams.threadPerStream("dialogue-stream"));
+    }
+
+    private static void discard(List<Future<ScratchSpace.Buffer>> parts) {
+        for (Future<ScratchSpace.Buffer> part : parts) {
+            part.cancel(true);
+            if (part.isDone() && !part.isCancelled()) {
+                try {
+                    ScratchSpace.Buffer leftover = part.get();
+                    if (leftover != null) {
+                        leftover.close();
+                    }
+                } catch (ExecutionException | InterruptedException ignored) {
+                }
+            }
+        }
+    }
+
+    private static ScratchSpace.Buffer await(Future<ScratchSpace.Buffer> part) throws Exception {
+        try {
+            return part.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.narrator;
+
+import com.narrator.engine.AudioChunk;
+import com.narrator.engine.AudioFormat;
+import com.narrator.engine.PcmPublisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+// Plumbing shared by the engines: turning WAV data (a buffer or a process's
+// stdout) into demand-paced AudioChunks.
+final class EngineStreams {
+
+    // About 0.75 s of 22 kHz 16-bit mono per chunk
+    static final int CHUNK_BYTES = 32 * 1024;
+
+    private EngineStreams() {
+    }
+
+    // One daemon thread per stream; streams are few and long-lived
+    static Executor threadPerStream(String name) {
+        return task -> {
+            Thread t = new Thread(task, name);
+            t.setDaemon(true);
+            t.start();
+        };
+    }
+
+    static AudioFormat format(Wav.Format format) {
+        return new AudioFormat(format.sampleRate(), format.channels(), format.bitsPerSample());
+    }
+
+    // Emits the PCM of a WAV stream, blocking on demand between chunks
+    static AudioFormat emitWav(InputStream in, int textStart, int textEnd, PcmPublisher.Emitter emitter)
+            throws IOException, InterruptedException {
+        AudioFormat format = format(Wav.readHeader(in));
+        int size = Math.max(format.bytesPerFrame(), CHUNK_BYTES / Math.max(1, format.bytesPerFrame()) * format.bytesPerFrame());
+        while (true) {
+            byte[] pcm = in.readNBytes(size);
+            // A truncated last frame is dropped
+            int whole = pcm.length / Math.max(1, format.bytesPerFrame()) * format.bytesPerFrame();
+            if (whole > 0) {
+                emitter.emit(new AudioChunk(format, whole == pcm.length ? pcm : Arrays.copyOf(pcm, whole), textStart, textEnd));
+            }
+            if (pcm.length < size) {
+                return format;
+            }
+        }
+    }
+
+    static void emitSilence(AudioFormat format, long millis, int textStart, int textEnd, PcmPublisher.Emitter emitter)
+            throws InterruptedException {
+        byte[] pcm = new byte[(int) (format.sampleRate() * millis / 1000) * format.bytesPerFrame()];
+        if (format.bitsPerSample() == 8) {
+            Arrays.fill(pcm, (byte) 0x80);
+        }
+        emitter.emit(new AudioChunk(format, pcm, textStart, textEnd));
+    }
+
+    // Process stdout sink: parses the WAV header as it arrives, then emits the PCM
+    // in frame-aligned chunks. Writes block while there is no demand, which backs
+    // up the pipe and pauses the engine.
+    static final class WavSink extends OutputStream {
+        private final PcmPublisher.Emitter emitter;
+        private final int textStart, textEnd;
+        private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        private AudioFormat format;
+        private byte[] chunk;
+        private int filled;
+
+        WavSink(PcmPublisher.Emitter emitter, int textStart, int textEnd) {
+            this.emitter = emitter;
+            this.textStart = textStart;
+            this.textEnd = textEnd;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (format == null) {
+                header.write(b, off, len);
+                ByteArrayInputStream in = new ByteArrayInputStream(header.toByteArray());
+                try {
+                    format = format(Wav.readHeader(in));
+                } catch (EOFException e) {
+                    // Header not complete yet
+                    return;
+                }
+                int frame = Math.max(1, format.bytesPerFrame());
+                chunk = new byte[Math.max(frame, CHUNK_BYTES / frame * frame)];
+                // Whatever followed the header is PCM
+                b = in.readAllBytes();
+                off = 0;
+                len = b.length;
+            }
+            while (len > 0) {
+                int n = Math.min(len, chunk.length - filled);
+                System.arraycopy(b, off, chunk, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+                if (filled == chunk.length) {
+                    emit(chunk, filled);
+                    chunk = new byte[chunk.length];
+                    filled = 0;
+                }
+            }
+        }
+
+        // The remainder, once the process has exited
+        void finish() throws IOException {
+            if (format == null) {
+                throw new IOException("Engine produced no audio");
+            }
+            int whole = filled / Math.max(1, format.bytesPerFrame()) * format.bytesPerFrame();
+            if (whole > 0) {
+                emit(chunk, whole);
+            }
+            filled = 0;
+        }
+
+        private void emit(byte[] pcm, int length) throws IOException {
+            try {
+                emitter.emit(new AudioChunk(format, length == pcm.length ? pcm : Arrays.copyOf(pcm, length), textStart, textEnd));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (CancellationException e) {
+                // The drain carries on discarding; the engine gets killed
+                throw new IOException("Stream cancelled");
+            }
+        }
+    }
+}
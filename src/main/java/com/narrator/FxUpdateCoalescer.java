@@ -0,0 +1,37 @@
+package com.narrator;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Collapses UI updates from background threads: only the newest value is kept and
+// at most one Platform.runLater is outstanding, so however fast values arrive the
+// FX thread never has more than one of them queued. It is not tied to the pulse:
+// of the values that arrive while an update is pending, only the newest is shown.
+final class FxUpdateCoalescer<T> {
+
+    private final Consumer<T> consumer;
+    private final AtomicReference<T> latest = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    FxUpdateCoalescer(Consumer<T> consumer) {
+        this.consumer = consumer;
+    }
+
+    void submit(T value) {
+        latest.set(value);
+        if (scheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::flush);
+        }
+    }
+
+    private void flush() {
+        scheduled.set(false);
+        T value = latest.getAndSet(null);
+        if (value != null) {
+            consumer.accept(value);
+        }
+    }
+}
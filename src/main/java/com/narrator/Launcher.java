@@ -0,0 +1,11 @@
+package com.narrator;
+
+// Plain main class for the shaded JAR: the java launcher refuses to start an
+// Application subclass directly when JavaFX is on the class path. Running from
+// the JAR is also what the AppCDS archive is built and used against.
+public class Launcher {
+
+    public static void main(String[] args) {
+        App.main(args);
+    }
+}
@@ -0,0 +1,325 @@
+package com.narrator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+// Streaming, forgiving scanner for HTML, XHTML and the XML files inside an EPUB.
+// Reports tags and text to a handler as it reads (SAX style) and never builds a
+// tree, so memory stays at one tag or text run. Unclosed tags, unknown entities
+// and doctype declarations are tolerated; nothing is ever fetched from outside.
+final class MarkupScanner {
+
+    interface Handler {
+        // name is lower case without namespace prefix; attribute names are lower case
+        void startTag(String name, Map<String, String> attributes, boolean selfClosing);
+
+        void endTag(String name);
+
+        // Entities already decoded; whitespace as in the source
+        void text(CharSequence text);
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // Longest HTML entity name is 31 characters
+    private static final int MAX_ENTITY_CHARS = 32;
+
+    // All HTML named character references, name -> text
+    private static final Map<String, String> ENTITIES = loadEntities();
+
+    private final Reader in;
+    private final Handler handler;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position, limit;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder markup = new StringBuilder();
+
+    private MarkupScanner(Reader in, Handler handler) {
+        this.in = in;
+        this.handler = handler;
+    }
+
+    static void scan(Reader in, Handler handler) throws IOException {
+        new MarkupScanner(in, handler).run();
+    }
+
+    private void run() throws IOException {
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '<') {
+                flushText();
+                tag();
+            } else if (c == '&') {
+                entity();
+            } else {
+                text.append((char) c);
+            }
+        }
+        flushText();
+    }
+
+    private void flushText() {
+        if (text.length() > 0) {
+            handler.text(text);
+            text.setLength(0);
+        }
+    }
+
+    private void tag() throws IOException {
+        markup.setLength(0);
+        int c = read();
+        if (c == '!') {
+            skipDeclaration();
+            return;
+        }
+        if (c == '?') {
+            skipUntil("?>");
+            return;
+        }
+        // Read to the closing '>', respecting quoted attribute values
+        char quote = 0;
+        while (c >= 0) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = (char) c;
+            } else if (c == '>') {
+                break;
+            }
+            markup.append((char) c);
+            c = read();
+        }
+        parseTag();
+    }
+
+    private void parseTag() {
+        int length = markup.length();
+        boolean closing = length > 0 && markup.charAt(0) == '/';
+        boolean selfClosing = length > 0 && markup.charAt(length - 1) == '/';
+        int i = closing ? 1 : 0;
+        int end = selfClosing ? length - 1 : length;
+        int nameStart = i;
+        while (i < end && !Character.isWhitespace(markup.charAt(i))) {
+            i++;
+        }
+        String name = localName(markup.substring(nameStart, i));
+        if (name.isEmpty()) {
+            return;
+        }
+        if (closing) {
+            handler.endTag(name);
+            return;
+        }
+        handler.startTag(name, attributes(i, end), selfClosing);
+        if (selfClosing) {
+            handler.endTag(name);
+        }
+    }
+
+    private Map<String, String> attributes(int i, int end) {
+        Map<String, String> attributes = null;
+        while (i < end) {
+            while (i < end && Character.isWhitespace(markup.charAt(i))) {
+                i++;
+            }
+            int nameStart = i;
+            while (i < end && markup.charAt(i) != '=' && !Character.isWhitespace(markup.charAt(i))) {
+                i++;
+            }
+            if (i == nameStart) {
+                break;
+            }
+            String name = markup.substring(nameStart, i).toLowerCase();
+            while (i < end && Character.isWhitespace(markup.charAt(i))) {
+                i++;
+            }
+            String value = "";
+            if (i < end && markup.charAt(i) == '=') {
+                i++;
+                while (i < end && Character.isWhitespace(markup.charAt(i))) {
+                    i++;
+                }
+                if (i < end && (markup.charAt(i) == '"' || markup.charAt(i) == '\'')) {
+                    char quote = markup.charAt(i++);
+                    int valueStart = i;
+                    while (i < end && markup.charAt(i) != quote) {
+                        i++;
+                    }
+                    value = decode(markup.substring(valueStart, i));
+                    i++;
+                } else {
+                    int valueStart = i;
+                    while (i < end && !Character.isWhitespace(markup.charAt(i))) {
+                        i++;
+                    }
+                    value = decode(markup.substring(valueStart, i));
+                }
+            }
+            if (attributes == null) {
+                attributes = new HashMap<>();
+            }
+            attributes.put(name, value);
+        }
+        return attributes == null ? Map.of() : attributes;
+    }
+
+    private static String localName(String name) {
+        int colon = name.indexOf(':');
+        return (colon >= 0 ? name.substring(colon + 1) : name).toLowerCase();
+    }
+
+    // Comments, CDATA (kept as text) and doctype
+    private void skipDeclaration() throws IOException {
+        int c = read();
+        if (c == '-') {
+            read();
+            skipUntil("-->");
+        } else if (c == '[') {
+            skipUntil("CDATA[");
+            markup.setLength(0);
+            while ((c = read()) >= 0) {
+                markup.append((char) c);
+                if (endsWith(markup, "]]>")) {
+                    markup.setLength(markup.length() - 3);
+                    break;
+                }
+            }
+            handler.text(markup);
+        } else {
+            while (c >= 0 && c != '>') {
+                c = read();
+            }
+        }
+    }
+
+    private void skipUntil(String terminator) throws IOException {
+        // The last terminator.length() characters read
+        int n = terminator.length();
+        char[] window = new char[n];
+        int seen = 0;
+        int c;
+        while ((c = read()) >= 0) {
+            System.arraycopy(window, 1, window, 0, n - 1);
+            window[n - 1] = (char) c;
+            if (++seen >= n && matches(window, terminator)) {
+                return;
+            }
+        }
+    }
+
+    private void entity() throws IOException {
+        markup.setLength(0);
+        int c;
+        while ((c = read()) >= 0 && c != ';' && markup.length() < MAX_ENTITY_CHARS && !Character.isWhitespace(c) && c != '<' && c != '&') {
+            markup.append((char) c);
+        }
+        String decoded = c == ';' ? decodeEntity(markup) : null;
+        if (decoded != null) {
+            text.append(decoded);
+            return;
+        }
+        // Not an entity: keep what was read
+        text.append('&').append(markup);
+        if (c == '<') {
+            flushText();
+            tag();
+        } else if (c == '&') {
+            entity();
+        } else if (c >= 0) {
+            text.append((char) c);
+        }
+    }
+
+    private static Map<String, String> loadEntities() {
+        Properties entities = new Properties();
+        try (InputStream in = MarkupScanner.class.getResourceAsStream("entities.properties")) {
+            if (in == null) {
+                throw new IOException("entities.properties is missing");
+            }
+            entities.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, String> map = new HashMap<>(entities.size() * 2);
+        entities.forEach((name, text) -> map.put((String) name, (String) text));
+        return map;
+    }
+
+    private static String decodeEntity(CharSequence name) {
+        if (name.length() > 1 && name.charAt(0) == '#') {
+            try {
+                boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+                int code = Integer.parseInt(name, hex ? 2 : 1, name.length(), hex ? 16 : 10);
+                return Character.isValidCodePoint(code) ? new String(Character.toChars(code)) : "";
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ENTITIES.get(name.toString());
+    }
+
+    // Entities inside attribute values
+    private static String decode(String value) {
+        int amp = value.indexOf('&');
+        if (amp < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        int i = 0;
+        while (amp >= 0) {
+            sb.append(value, i, amp);
+            int semi = value.indexOf(';', amp);
+            String decoded = semi > 0 ? decodeEntity(value.substring(amp + 1, semi)) : null;
+            if (decoded != null) {
+                sb.append(decoded);
+                i = semi + 1;
+            } else {
+                sb.append('&');
+                i = amp + 1;
+            }
+            amp = value.indexOf('&', i);
+        }
+        return sb.append(value, i, value.length()).toString();
+    }
+
+    private static boolean matches(char[] chars, String s) {
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean endsWith(StringBuilder sb, String suffix) {
+        int offset = sb.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (sb.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
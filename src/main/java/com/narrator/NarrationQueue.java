@@ -0,0 +1,275 @@
+package com.narrator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Playback queue of texts, files and OCR captures. While one item plays, the items
+// after it are synthesized ahead of time (up to prefetchDepth items, and only while
+// the look-ahead audio stays under the memory cap) so the next one starts instantly.
+// The size of an item is only known once it has been rendered: if it doesn't fit
+// under the cap then, it is dropped and rendered again once it fits (or its turn comes).
+final class NarrationQueue {
+
+    interface Synthesizer {
+        // Returns the rendered audio, or null if the engine can only speak live
+        ScratchSpace.Buffer synthesize(String text) throws Exception;
+    }
+
+    interface Player {
+        void play(Item item, ScratchSpace.Buffer audio) throws Exception;
+    }
+
+    interface Listener {
+        void itemStarted(Item item, int remaining);
+        void itemFailed(Item item, Exception error);
+        void idle();
+    }
+
+    // editorOffset: where the text starts in the editor, -1 when it isn't shown there
+    record Item(String label, String text, int editorOffset) {
+        Item(String label, String text) {
+            this(label, text, -1);
+        }
+    }
+
+    private static final class Entry {
+        final Item item;
+        final int generation;
+        Future<?> audio;
+        ScratchSpace.Buffer result;
+        int attempt;
+        long size;
+        // Size of audio rendered earlier and dropped for the cap, else -1
+        long droppedSize = -1;
+
+        Entry(Item item, int generation) {
+            this.item = item;
+            this.generation = generation;
+        }
+    }
+
+    private final Synthesizer synthesizer;
+    private final Player player;
+    private final Listener listener;
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "narration-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Deque<Entry> pending = new ArrayDeque<>();
+    private Thread playbackThread;
+    private Entry current;
+    private Entry synthesizing;
+    private int generation;
+    private long prefetchedBytes;
+    private int prefetchDepth = 1;
+    private long memoryCapBytes = 64L * 1024 * 1024;
+
+    NarrationQueue(Synthesizer synthesizer, Player player, Listener listener) {
+        this.synthesizer = synthesizer;
+        this.player = player;
+        this.listener = listener;
+    }
+
+    synchronized void add(Item item) {
+        pending.addLast(new Entry(item, generation));
+        if (playbackThread == null) {
+            playbackThread = new Thread(this::runPlayback, "narration-playback");
+            playbackThread.setDaemon(true);
+            playbackThread.start();
+        }
+        notifyAll();
+        schedulePrefetch();
+    }
+
+    // Drops everything queued, including the item currently being synthesized or played.
+    // The caller is responsible for stopping the running player process.
+    synchronized void clear() {
+        generation++;
+        if (current != null) {
+            cancel(current);
+        }
+        for (Entry entry : pending) {
+            cancel(entry);
+        }
+        pending.clear();
+    }
+
+    // Throws away look-ahead audio, e.g. after the voice or engine was changed
+    synchronized void invalidatePrefetch() {
+        for (Entry entry : pending) {
+            cancel(entry);
+        }
+        schedulePrefetch();
+    }
+
+    synchronized void setPrefetchDepth(int depth) {
+        prefetchDepth = Math.max(0, depth);
+        schedulePrefetch();
+    }
+
+    synchronized void setMemoryCap(long bytes) {
+        memoryCapBytes = Math.max(0, bytes);
+        schedulePrefetch();
+    }
+
+    synchronized boolean isActive() {
+        return current != null || !pending.isEmpty();
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    synchronized long prefetchedBytes() {
+        return prefetchedBytes;
+    }
+
+    private void runPlayback() {
+        while (true) {
+            Entry entry;
+            Future<?> audioFuture;
+            int remaining;
+            synchronized (this) {
+                while (pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                entry = pending.pollFirst();
+                current = entry;
+                remaining = pending.size();
+                if (entry.audio == null) {
+                    // Not prefetched (depth 0 or over the cap): synthesize it now
+                    submit(entry);
+                }
+                audioFuture = entry.audio;
+            }
+            listener.itemStarted(entry.item, remaining);
+
+            ScratchSpace.Buffer audio = null;
+            try {
+                audioFuture.get();
+                synchronized (this) {
+                    // Take ownership: from here on the playback thread releases it
+                    audio = entry.result;
+                    entry.result = null;
+                    prefetchedBytes -= entry.size;
+                    entry.size = 0;
+                    schedulePrefetch();
+                }
+                if (!isStale(entry)) {
+                    player.play(entry.item, audio);
+                }
+            } catch (CancellationException | InterruptedException ignored) {
+                // Stopped
+            } catch (ExecutionException e) {
+                if (!isStale(entry)) {
+                    Throwable cause = e.getCause();
+                    listener.itemFailed(entry.item, cause instanceof Exception ? (Exception) cause : e);
+                }
+            } catch (Exception e) {
+                if (!isStale(entry)) {
+                    listener.itemFailed(entry.item, e);
+                }
+            } finally {
+                if (audio != null) {
+                    audio.close();
+                }
+            }
+
+            synchronized (this) {
+                current = null;
+                if (pending.isEmpty()) {
+                    listener.idle();
+                }
+            }
+        }
+    }
+
+    private synchronized boolean isStale(Entry entry) {
+        return entry.generation != generation;
+    }
+
+    // Starts synthesis of the next look-ahead item, one at a time so the cap is
+    // checked against audio that actually exists
+    private void schedulePrefetch() {
+        if (synthesizing != null) {
+            return;
+        }
+        int ahead = 0;
+        for (Entry entry : pending) {
+            if (ahead++ >= prefetchDepth || prefetchedBytes >= memoryCapBytes
+                    || entry.audio == null && prefetchedBytes + entry.droppedSize > memoryCapBytes) {
+                return;
+            }
+            if (entry.audio == null) {
+                submit(entry);
+                return;
+            }
+        }
+    }
+
+    private void submit(Entry entry) {
+        int attempt = ++entry.attempt;
+        synthesizing = entry;
+        entry.audio = prefetchExecutor.submit(() -> {
+            try {
+                ScratchSpace.Buffer audio = synthesizer.synthesize(entry.item.text());
+                synchronized (this) {
+                    long size = audio != null ? audio.size() : 0;
+                    if (entry.attempt == attempt && entry.audio != null && entry != current
+                            && prefetchedBytes + size > memoryCapBytes) {
+                        // Only now is its size known: over the cap, so not kept as look-ahead
+                        entry.droppedSize = size;
+                        entry.audio = null;
+                        if (audio != null) {
+                            audio.close();
+                        }
+                    } else if (entry.attempt == attempt && entry.audio != null) {
+                        entry.result = audio;
+                        entry.size = size;
+                        prefetchedBytes += entry.size;
+                    } else if (audio != null) {
+                        // Dropped while synthesizing
+                        audio.close();
+                    }
+                }
+                return null;
+            } finally {
+                synchronized (this) {
+                    if (synthesizing == entry && entry.attempt == attempt) {
+                        synthesizing = null;
+                        schedulePrefetch();
+                    }
+                }
+            }
+        });
+    }
+
+    private void cancel(Entry entry) {
+        if (synthesizing == entry) {
+            synthesizing = null;
+        }
+        entry.droppedSize = -1;
+        entry.attempt++;
+        if (entry.audio != null) {
+            entry.audio.cancel(true);
+            entry.audio = null;
+        }
+        if (entry.result != null) {
+            entry.result.close();
+            entry.result = null;
+        }
+        prefetchedBytes -= entry.size;
+        entry.size = 0;
+    }
+}
@@ -0,0 +1,238 @@
+package com.narrator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// OCR of a batch of image files (PNG, JPEG, multi-page TIFF). A reader thread
+// walks the files page by page, decoding a page only when a recognition slot is
+// free, and a small pool runs tesseract on the pages in parallel. Results are
+// handed to the listener strictly in page order as soon as the next page in line
+// is done, so the first page can be used while later ones are still running.
+final class OcrBatch {
+
+    record Page(int number, String source, String text, Exception error) {}
+
+    // Called on pool threads, in page order, one call at a time; must not block
+    interface Listener {
+        void pageDone(Page page);
+
+        void finished(int pages, boolean cancelled);
+    }
+
+    private static final int MAX_WORKERS = 4;
+
+    private final OcrService ocr;
+    private final ScratchSpace scratch;
+    private final String tesseractPath;
+    private final List<Path> files;
+    private final Listener listener;
+    private final int workers;
+    private final ExecutorService pool;
+    // Decoded pages waiting for or in recognition
+    private final Semaphore slots;
+    private final Thread reader;
+
+    // Guarded by 'this'
+    private final Map<Integer, Page> completed = new HashMap<>();
+    private int nextToDeliver;
+    private int total = -1;
+    private boolean cancelled;
+    private boolean finished;
+
+    OcrBatch(OcrService ocr, ScratchSpace scratch, String tesseractPath, List<Path> files, Listener listener) {
+        this.ocr = ocr;
+        this.scratch = scratch;
+        this.tesseractPath = tesseractPath;
+        this.files = files;
+        this.listener = listener;
+        // tesseract runs single-threaded here, so one process per spare core
+        this.workers = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+        this.pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "ocr-page");
+            t.setDaemon(true);
+            return t;
+        });
+        this.slots = new Semaphore(workers * 2);
+        this.reader = new Thread(this::readPages, "ocr-reader");
+        this.reader.setDaemon(true);
+    }
+
+    int workers() {
+        return workers;
+    }
+
+    void start() {
+        reader.start();
+    }
+
+    void cancel() {
+        synchronized (this) {
+            if (cancelled || finished) {
+                return;
+            }
+            cancelled = true;
+        }
+        reader.interrupt();
+        pool.shutdownNow();
+        finish();
+    }
+
+    private void readPages() {
+        int number = 0;
+        try {
+            for (Path file : files) {
+                if (isTiff(file)) {
+                    number = readTiff(file, number);
+                } else {
+                    slots.acquire();
+                    ScratchSpace.Buffer image;
+                    try (InputStream in = Files.newInputStream(file)) {
+                        // tesseract decodes PNG and JPEG itself
+                        image = scratch.read(in, suffix(file));
+                    } catch (IOException e) {
+                        slots.release();
+                        complete(new Page(number++, file.getFileName().toString(), null, e));
+                        continue;
+                    }
+                    recognize(number++, file.getFileName().toString(), image);
+                }
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+        synchronized (this) {
+            total = number;
+        }
+        deliver();
+    }
+
+    // Pages are decoded one at a time as slots free up, never all at once
+    private int readTiff(Path file, int number) throws InterruptedException {
+        String name = file.getFileName().toString();
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("No TIFF decoder available");
+            }
+            ImageReader tiff = readers.next();
+            try {
+                tiff.setInput(in, true);
+                for (int index = 0; ; index++) {
+                    slots.acquire();
+                    BufferedImage page;
+                    try {
+                        page = tiff.read(index);
+                    } catch (IndexOutOfBoundsException e) {
+                        // Past the last page
+                        slots.release();
+                        return number;
+                    } catch (IOException e) {
+                        slots.release();
+                        complete(new Page(number++, name + " p." + (index + 1), null, e));
+                        return number;
+                    }
+                    ScratchSpace.Buffer png = scratch.allocate(".png");
+                    try (OutputStream out = png.outputStream()) {
+                        ImageIO.write(page, "png", out);
+                    } catch (IOException e) {
+                        png.close();
+                        slots.release();
+                        complete(new Page(number++, name + " p." + (index + 1), null, e));
+                        continue;
+                    }
+                    recognize(number++, name + " p." + (index + 1), png);
+                }
+            } finally {
+                tiff.dispose();
+            }
+        } catch (IOException e) {
+            complete(new Page(number++, name, null, e));
+            return number;
+        }
+    }
+
+    // Takes ownership of image and of one slot
+    private void recognize(int number, String source, ScratchSpace.Buffer image) {
+        try {
+            pool.execute(() -> {
+                Page page;
+                try (image) {
+                    page = new Page(number, source, ocr.recognize(image, tesseractPath, true), null);
+                } catch (Exception e) {
+                    page = new Page(number, source, null, e);
+                } finally {
+                    slots.release();
+                }
+                complete(page);
+            });
+        } catch (RuntimeException e) {
+            // Pool shut down by cancel()
+            image.close();
+            slots.release();
+        }
+    }
+
+    private void complete(Page page) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            completed.put(page.number(), page);
+        }
+        deliver();
+    }
+
+    private void deliver() {
+        synchronized (this) {
+            Page page;
+            while (!cancelled && (page = completed.remove(nextToDeliver)) != null) {
+                nextToDeliver++;
+                listener.pageDone(page);
+            }
+            if (total < 0 || nextToDeliver < total || cancelled) {
+                return;
+            }
+        }
+        finish();
+    }
+
+    private void finish() {
+        int pages;
+        boolean wasCancelled;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            pages = nextToDeliver;
+            wasCancelled = cancelled;
+        }
+        pool.shutdown();
+        listener.finished(pages, wasCancelled);
+    }
+
+    private static boolean isTiff(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".tif") || name.endsWith(".tiff");
+    }
+
+    private static String suffix(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? ".img" : name.substring(dot);
+    }
+}
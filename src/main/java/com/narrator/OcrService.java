@@ -0,0 +1,90 @@
+package com.narrator;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+import javafx.scene.robot.Robot;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+// Screen capture + Tesseract OCR. Kept out of App so that the AWT/Swing interop
+// classes (SwingFXUtils, ImageIO, BufferedImage) are only loaded on the first capture.
+final class OcrService {
+
+    private static final Duration OCR_DEADLINE = Duration.ofSeconds(60);
+
+    private final ScratchSpace scratch;
+    private final ProcessSupervisor supervisor;
+
+    OcrService(ScratchSpace scratch, ProcessSupervisor supervisor) {
+        this.scratch = scratch;
+        this.supervisor = supervisor;
+    }
+
+    WritableImage captureScreen(double x, double y, double w, double h) {
+        Robot robot = new Robot();
+        return robot.getScreenCapture(null, x, y, w, h);
+    }
+
+    // AppCDS training run: goes through the capture path with a blank pixel, all
+    // but the screenshot and Tesseract, so its classes end up in the archive
+    void warmUp() throws IOException {
+        new Robot();
+        BufferedImage pixel = SwingFXUtils.fromFXImage(new WritableImage(1, 1), null);
+        try (ScratchSpace.Buffer png = scratch.allocate(".png")) {
+            try (OutputStream out = png.outputStream()) {
+                ImageIO.write(pixel, "png", out);
+            }
+            try (InputStream in = png.inputStream()) {
+                ImageIO.read(in);
+            }
+        }
+    }
+
+    String recognize(WritableImage capture, String tesseractPath) throws Exception {
+        BufferedImage bufferedImage = SwingFXUtils.fromFXImage(capture, null);
+        try (ScratchSpace.Buffer png = scratch.allocate(".png")) {
+            try (OutputStream out = png.outputStream()) {
+                ImageIO.write(bufferedImage, "png", out);
+            }
+            return recognize(png, tesseractPath);
+        }
+    }
+
+    String recognize(ScratchSpace.Buffer image, String tesseractPath) throws Exception {
+        return recognize(image, tesseractPath, false);
+    }
+
+    // Tesseract reads the image from stdin and writes text to stdout. Batch OCR
+    // runs several at once, each limited to one thread (singleThreaded).
+    String recognize(ScratchSpace.Buffer image, String tesseractPath, boolean singleThreaded) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(
+            tesseractPath,
+            "stdin",
+            "stdout",
+            "-l", "eng"
+        );
+        if (singleThreaded) {
+            pb.environment().put("OMP_THREAD_LIMIT", "1");
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ProcessSupervisor.Supervised process = supervisor.start(ProcessSupervisor.OCR, "tesseract", pb,
+            output, OCR_DEADLINE, null);
+        try {
+            try (OutputStream in = process.stdin()) {
+                image.writeTo(in);
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0 && output.size() == 0) {
+                throw new IOException("Tesseract failed: " + process.errorOutput());
+            }
+            return output.toString(StandardCharsets.UTF_8).trim();
+        } finally {
+            process.kill();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.narrator;
+
+import com.narrator.engine.AudioChunk;
+import com.narrator.engine.AudioFormat;
+import com.narrator.engine.PcmPublisher;
+import com.narrator.engine.SpeechEngine;
+import com.narrator.engine.SpeechRequest;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.concurrent.Flow;
+
+// Piper behind the engine API. The text is normalized and cut into sentence-aligned
+// utterances that go to the warm worker for the voice one at a time; the next
+// utterance is only synthesized once the subscriber has taken the previous one's audio.
+final class PiperEngine implements SpeechEngine {
+
+    // Short first utterance so audio starts early, then larger ones
+    private static final int FIRST_UTTERANCE_CHARS = ChunkedNarrator.FIRST_CHUNK_CHARS;
+    private static final int UTTERANCE_CHARS = 600;
+    // Piper's own pause between sentences
+    private static final long SENTENCE_SILENCE_MILLIS = 200;
+
+    private final PiperWorkers workers;
+    private final String piperPath;
+
+    PiperEngine(PiperWorkers workers, String piperPath) {
+        this.workers = workers;
+        this.piperPath = piperPath;
+    }
+
+    @Override
+    public String name() {
+        return "Piper";
+    }
+
+    // request.voice() is the model path; speed and volume are the voice's own
+    @Override
+    public Flow.Publisher<AudioChunk> synthesize(SpeechRequest request) {
+        Path model = Path.of(request.voice());
+        String text = request.text();
+        return new PcmPublisher(emitter -> {
+            TextNormalizer sentences = new TextNormalizer(new StringReader(text));
+            StringBuilder spoken = new StringBuilder();
+            boolean more = sentences.next();
+            int limit = FIRST_UTTERANCE_CHARS;
+            while (more && !emitter.isCancelled()) {
+                // Normalized text to Piper, source offsets on the chunks
+                int start = sentences.start();
+                int end;
+                spoken.setLength(0);
+                do {
+                    if (spoken.length() > 0) {
+                        spoken.append(' ');
+                    }
+                    spoken.append(sentences.text());
+                    end = sentences.end();
+                    more = sentences.next();
+                } while (more && spoken.length() + 1 + sentences.text().length() <= limit);
+                limit = UTTERANCE_CHARS;
+
+                AudioFormat format;
+                try (ScratchSpace.Buffer wav = workers.synthesize(piperPath, model, spoken.toString());
+                     InputStream in = wav.inputStream()) {
+                    format = EngineStreams.emitWav(in, start, end, emitter);
+                }
+                if (more) {
+                    EngineStreams.emitSilence(format, SENTENCE_SILENCE_MILLIS, start, end, emitter);
+                }
+            }
+        }, EngineStreams.threadPerStream("piper-stream"));
+    }
+}
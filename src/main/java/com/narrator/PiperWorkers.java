@@ -0,0 +1,470 @@
+package com.narrator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Warm Piper processes, one per voice model. Each worker keeps its model loaded
+// and runs in --output_dir mode: one utterance per input line, and Piper answers
+// with the path of the WAV it wrote. Every voice has its own thread, so different
+// voices synthesize in parallel while each voice stays sequential.
+//
+// A loaded voice costs tens to hundreds of MB, so residency is governed: the
+// number of workers and their total resident size are capped, least recently
+// used idle workers are evicted to make room, workers idle for too long are shut
+// down, and idle workers are shed while the system is short of memory. Busy
+// workers are never evicted; the caps may be exceeded until they finish.
+final class PiperWorkers implements AutoCloseable {
+
+    static final int DEFAULT_MAX_RESIDENT = 3;
+    static final long DEFAULT_MEMORY_CAP = 2048L * 1024 * 1024;
+    static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+
+    private static final long GOVERN_PERIOD_SECONDS = 5;
+    // Memory pressure: less than this, or a tenth of RAM, available
+    private static final long LOW_MEMORY_BYTES = 512L * 1024 * 1024;
+    // A request with no output and no CPU use for this long is hung
+    private static final Duration REQUEST_STALL_TIMEOUT = Duration.ofSeconds(20);
+
+    private final ScratchSpace scratch;
+    private final ProcessSupervisor supervisor;
+    // Access order: iteration starts at the least recently used voice
+    private final Map<Path, Worker> workers = new LinkedHashMap<>(8, 0.75f, true);
+    private final ScheduledExecutorService governor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "piper-governor");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean closed;
+
+    // Limits and counters, guarded by 'this'
+    private int maxResident = DEFAULT_MAX_RESIDENT;
+    private long memoryCap = DEFAULT_MEMORY_CAP;
+    private long idleTimeoutNanos = DEFAULT_IDLE_TIMEOUT.toNanos();
+    private long capEvictions;
+    private long idleEvictions;
+    private long pressureEvictions;
+    private Path lastPressureEviction;
+
+    PiperWorkers(ScratchSpace scratch, ProcessSupervisor supervisor) {
+        this.scratch = scratch;
+        this.supervisor = supervisor;
+        governor.scheduleWithFixedDelay(this::govern, GOVERN_PERIOD_SECONDS, GOVERN_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    synchronized void setMaxResident(int maxResident) {
+        this.maxResident = Math.max(1, maxResident);
+    }
+
+    synchronized void setMemoryCap(long bytes) {
+        this.memoryCap = bytes;
+    }
+
+    synchronized void setIdleTimeout(Duration timeout) {
+        this.idleTimeoutNanos = timeout.toNanos();
+    }
+
+    Future<ScratchSpace.Buffer> submit(String piperPath, Path modelPath, String text) {
+        return submit(piperPath, modelPath, text, null);
+    }
+
+    // synthNanos (may be null) receives the time Piper took for this utterance,
+    // measured on the worker: without queue wait, and never reported for the first
+    // request to a freshly started process, which includes loading the model
+    Future<ScratchSpace.Buffer> submit(String piperPath, Path modelPath, String text, LongConsumer synthNanos) {
+        Worker worker = worker(piperPath, modelPath);
+        FutureTask<ScratchSpace.Buffer> task = new FutureTask<>(() -> worker.synthesize(text, synthNanos)) {
+            // Exactly once, however the task ends (a cancelled request no longer needs the worker)
+            @Override
+            protected void done() {
+                worker.finished();
+            }
+
+            @Override
+            protected void set(ScratchSpace.Buffer result) {
+                super.set(result);
+                // Cancelled while synthesizing: nobody will collect the audio
+                if (isCancelled() && result != null) {
+                    result.close();
+                }
+            }
+        };
+        try {
+            worker.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shut down between lookup and here (close())
+            worker.finished();
+            throw new IllegalStateException("Piper workers shut down", e);
+        }
+        return task;
+    }
+
+    ScratchSpace.Buffer synthesize(String piperPath, Path modelPath, String text) throws Exception {
+        Future<ScratchSpace.Buffer> result = submit(piperPath, modelPath, text);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    synchronized int size() {
+        return workers.size();
+    }
+
+    // Resident size of all workers: measured where /proc allows, else the model file size
+    synchronized long residentBytes() {
+        long total = 0;
+        for (Worker worker : workers.values()) {
+            total += worker.footprint();
+        }
+        return total;
+    }
+
+    synchronized String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("  Warm Piper voices: %d of %d, %.0f of %.0f MB resident%n", workers.size(), maxResident,
+            residentBytes() / (1024.0 * 1024.0), memoryCap / (1024.0 * 1024.0)));
+        for (Worker worker : workers.values()) {
+            sb.append(String.format("    %s: %.0f MB%s%n", worker.modelPath.getFileName(),
+                worker.footprint() / (1024.0 * 1024.0), worker.isIdle() ? "" : " (busy)"));
+        }
+        sb.append(String.format("  Voice evictions: %d over cap, %d idle, %d memory pressure%s%n",
+            capEvictions, idleEvictions, pressureEvictions,
+            lastPressureEviction == null ? "" : " (last: " + lastPressureEviction.getFileName() + ")"));
+        return sb.toString();
+    }
+
+    // Counts the caller as a user of the worker before it can be chosen for eviction
+    private Worker worker(String piperPath, Path modelPath) {
+        Worker worker;
+        List<Worker> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Piper workers shut down");
+            }
+            worker = workers.get(modelPath);
+            if (worker == null || !worker.piperPath.equals(piperPath)) {
+                if (worker != null) {
+                    workers.remove(modelPath);
+                    evicted.add(worker);
+                }
+                worker = new Worker(piperPath, modelPath);
+                workers.put(modelPath, worker);
+            }
+            worker.pending++;
+            worker.lastUsedNanos = System.nanoTime();
+            enforceLimits(evicted);
+        }
+        closeAll(evicted);
+        return worker;
+    }
+
+    // Evicts least recently used idle workers while over the count or size cap.
+    // The most recently used worker always stays.
+    private void enforceLimits(List<Worker> evicted) {
+        while (workers.size() > maxResident || residentBytes() > memoryCap) {
+            Worker victim = leastRecentlyUsedIdle();
+            if (victim == null) {
+                return;
+            }
+            evict(victim, evicted);
+            capEvictions++;
+        }
+    }
+
+    private Worker leastRecentlyUsedIdle() {
+        int remaining = workers.size();
+        for (Worker worker : workers.values()) {
+            if (--remaining == 0) {
+                break;
+            }
+            if (worker.isIdle()) {
+                return worker;
+            }
+        }
+        return null;
+    }
+
+    private void evict(Worker worker, List<Worker> evicted) {
+        workers.remove(worker.modelPath);
+        evicted.add(worker);
+    }
+
+    private void govern() {
+        List<Worker> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (Worker worker : new ArrayList<>(workers.values())) {
+                if (worker.isIdle() && now - worker.lastUsedNanos > idleTimeoutNanos) {
+                    evict(worker, evicted);
+                    idleEvictions++;
+                }
+            }
+            // One per round: memory only shows up as available once the process is gone
+            if (underMemoryPressure()) {
+                Worker victim = leastRecentlyUsedIdle();
+                if (victim != null) {
+                    evict(victim, evicted);
+                    pressureEvictions++;
+                    lastPressureEviction = victim.modelPath;
+                }
+            }
+            enforceLimits(evicted);
+        }
+        closeAll(evicted);
+    }
+
+    private static boolean underMemoryPressure() {
+        long available = SystemMemory.availableBytes();
+        if (available < 0) {
+            return false;
+        }
+        return available < Math.max(LOW_MEMORY_BYTES, SystemMemory.totalBytes() / 10);
+    }
+
+    private static void closeAll(List<Worker> workers) {
+        for (Worker worker : workers) {
+            worker.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Worker> all;
+        synchronized (this) {
+            closed = true;
+            all = new ArrayList<>(workers.values());
+            workers.clear();
+        }
+        governor.shutdownNow();
+        closeAll(all);
+    }
+
+    private final class Worker {
+        final String piperPath;
+        final Path modelPath;
+        final Path outputDir;
+        final ExecutorService executor;
+        final long modelBytes;
+
+        // Submitted and not finished, and last use; guarded by PiperWorkers.this
+        int pending;
+        long lastUsedNanos;
+
+        // Output paths reported by Piper; guarded by 'this'
+        private final ArrayDeque<String> results = new ArrayDeque<>();
+        private int pendingDiscards;
+        private volatile ProcessSupervisor.Supervised process;
+        private boolean exited;
+        // Requests answered by the current process; only touched on the executor thread
+        private int served;
+
+        Worker(String piperPath, Path modelPath) {
+            this.piperPath = piperPath;
+            this.modelPath = modelPath;
+            String model = modelPath.getFileName().toString().replace(".onnx", "");
+            this.outputDir = scratch.directory().resolve("piper-" + model);
+            long size;
+            try {
+                size = Files.size(modelPath);
+            } catch (IOException e) {
+                size = 0;
+            }
+            this.modelBytes = size;
+            this.executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "piper-" + model);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        void finished() {
+            synchronized (PiperWorkers.this) {
+                pending--;
+                lastUsedNanos = System.nanoTime();
+            }
+        }
+
+        // Guarded by PiperWorkers.this
+        boolean isIdle() {
+            return pending == 0;
+        }
+
+        // Measured RSS while the process runs, the model size until it is known
+        long footprint() {
+            ProcessSupervisor.Supervised p = process;
+            if (p != null && p.isAlive()) {
+                long rss = SystemMemory.residentBytes(p.process.pid());
+                if (rss > 0) {
+                    return rss;
+                }
+            }
+            return modelBytes;
+        }
+
+        // Only ever called on this worker's executor thread
+        ScratchSpace.Buffer synthesize(String text, LongConsumer synthNanos) throws Exception {
+            ProcessSupervisor.Supervised p = ensureStarted();
+            boolean warm = served > 0;
+            // One line is one utterance
+            String line = text.replaceAll("\\s*[\\r\\n]+\\s*", " ").trim() + "\n";
+            p.arm(requestDeadline(line));
+            long start = System.nanoTime();
+            try {
+                OutputStream stdin = p.stdin();
+                stdin.write(line.getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+
+                String path;
+                synchronized (this) {
+                    try {
+                        while (results.isEmpty() && !exited) {
+                            wait();
+                        }
+                    } catch (InterruptedException e) {
+                        // Abandoned: drop the WAV when (if) it shows up, keep the model warm
+                        pendingDiscards++;
+                        throw e;
+                    }
+                    if (results.isEmpty()) {
+                        String reason = p.failure() != null ? p.failure() : "exited unexpectedly";
+                        throw new IOException("Piper " + reason);
+                    }
+                    path = results.pollFirst();
+                }
+                served++;
+                if (warm && synthNanos != null) {
+                    synthNanos.accept(System.nanoTime() - start);
+                }
+
+                Path wav = Path.of(path);
+                try (InputStream in = Files.newInputStream(wav)) {
+                    return scratch.read(in, ".wav");
+                } finally {
+                    Files.deleteIfExists(wav);
+                }
+            } finally {
+                p.disarm();
+            }
+        }
+
+        // Model loading on the first call included
+        private Duration requestDeadline(String line) {
+            return Duration.ofSeconds(30).plusMillis(line.length() * 100L);
+        }
+
+        private synchronized ProcessSupervisor.Supervised ensureStarted() throws IOException {
+            if (process != null && process.isAlive()) {
+                return process;
+            }
+            if (process != null) {
+                supervisor.recordRestart();
+            }
+            Files.createDirectories(outputDir);
+            results.clear();
+            pendingDiscards = 0;
+            exited = false;
+            served = 0;
+
+            ProcessBuilder pb = new ProcessBuilder(
+                piperPath,
+                "--model", modelPath.toString(),
+                "--output_dir", outputDir.toString()
+            );
+            ProcessSupervisor.Supervised p = supervisor.start(ProcessSupervisor.SYNTHESIS,
+                "piper-" + modelPath.getFileName(), pb, new LineSink(this::onResult), null, REQUEST_STALL_TIMEOUT);
+            // Loading the model and synthesizing print nothing for a while, but use CPU
+            p.watchCpu();
+            p.disarm();
+            p.process.onExit().thenRun(() -> onExit(p));
+            process = p;
+            return p;
+        }
+
+        private synchronized void onResult(String line) {
+            String path = line.trim();
+            if (path.isEmpty()) {
+                return;
+            }
+            if (pendingDiscards > 0) {
+                pendingDiscards--;
+                try {
+                    Files.deleteIfExists(Path.of(path));
+                } catch (IOException ignored) {
+                }
+            } else {
+                results.addLast(path);
+                notifyAll();
+            }
+        }
+
+        private synchronized void onExit(ProcessSupervisor.Supervised p) {
+            if (process == p) {
+                exited = true;
+                notifyAll();
+            }
+        }
+
+        synchronized void close() {
+            executor.shutdownNow();
+            if (process != null) {
+                process.kill();
+            }
+        }
+    }
+
+    // Splits the worker's stdout into lines
+    private static final class LineSink extends OutputStream {
+        private final Consumer<String> consumer;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineSink(Consumer<String> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                consumer.accept(line.toString(StandardCharsets.UTF_8));
+                line.reset();
+            } else {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+    }
+}
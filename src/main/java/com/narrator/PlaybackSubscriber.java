@@ -0,0 +1,84 @@
+package com.narrator;
+
+import com.narrator.engine.AudioChunk;
+import com.narrator.engine.AudioFormat;
+import com.narrator.engine.PcmSubscriber;
+
+import java.io.IOException;
+
+// Plays a stream through one aplay process fed raw PCM (Linux). Writes block
+// when aplay's buffer is full, which holds back demand and so the engine.
+// Chunks are entered into the timing index as they are handed to the player.
+final class PlaybackSubscriber extends PcmSubscriber {
+
+    private static final int WINDOW = 2;
+
+    private final ProcessSupervisor supervisor;
+    private final TimingIndex timing;
+    private ProcessSupervisor.Supervised player;
+    private AudioFormat format;
+    private long playEndNanos;
+
+    // timing may be null
+    PlaybackSubscriber(ProcessSupervisor supervisor, TimingIndex timing) {
+        super(WINDOW);
+        this.supervisor = supervisor;
+        this.timing = timing;
+    }
+
+    @Override
+    protected void consume(AudioChunk chunk) throws IOException {
+        if (player == null) {
+            format = chunk.format();
+            ProcessBuilder pb = new ProcessBuilder("aplay", "-q", "-t", "raw",
+                "-f", format.bitsPerSample() == 8 ? "U8" : "S16_LE",
+                "-r", String.valueOf(format.sampleRate()),
+                "-c", String.valueOf(format.channels()));
+            player = supervisor.start(ProcessSupervisor.NARRATION, "aplay-stream", pb, null, null,
+                ProcessSupervisor.PLAYER_STALL_TIMEOUT);
+            player.watchStdin();
+        } else if (!format.equals(chunk.format())) {
+            throw new IOException("Audio format changed mid-stream");
+        }
+
+        long playStart = Math.max(playEndNanos, System.nanoTime());
+        playEndNanos = playStart + chunk.durationNanos();
+        if (timing != null) {
+            int segment = timing.addSegment(chunk.textStart(), chunk.textEnd(),
+                chunk.pcm().length / Math.max(1, format.bytesPerFrame()), format.sampleRate());
+            timing.started(segment, playStart);
+        }
+        try {
+            player.stdin().write(chunk.pcm());
+            player.stdin().flush();
+        } catch (IOException e) {
+            if (player.failure() != null) {
+                throw new IOException("aplay " + player.failure(), e);
+            }
+            if (player.wasKilled()) {
+                throw new IOException("Playback stopped");
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected void finish() throws Exception {
+        if (player == null) {
+            return;
+        }
+        try {
+            player.stdin().close();
+        } catch (IOException ignored) {
+            // Stopped
+        }
+        player.waitFor();
+    }
+
+    @Override
+    protected void abort(Throwable cause) {
+        if (player != null) {
+            player.kill();
+        }
+    }
+}
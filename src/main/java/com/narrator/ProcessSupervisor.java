@@ -0,0 +1,357 @@
+package com.narrator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Runs every engine subprocess (Piper, espeak-ng/say/SAPI, tesseract, players).
+// Output is always drained on background threads so a chatty process can never
+// block on a full pipe. A watchdog enforces per-call deadlines and kills processes
+// whose output (or progress probe) stopped moving, together with their children.
+// Time during which we hold the process back (a slow output consumer, or no input
+// for a player) is never counted as a stall.
+final class ProcessSupervisor {
+
+    // Process groups, so Stop can kill everything that is narrating
+    static final String NARRATION = "narration";
+    static final String SYNTHESIS = "synthesis";
+    static final String OCR = "ocr";
+    static final String EXPORT = "export";
+
+    private static final long WATCHDOG_PERIOD_MILLIS = 250;
+    private static final int ERROR_TAIL_BYTES = 2048;
+    // A player that stopped taking audio for this long is wedged
+    static final Duration PLAYER_STALL_TIMEOUT = Duration.ofSeconds(10);
+    // Players and live speech that print nothing: no CPU use for this long means hung
+    static final Duration QUIET_STALL_TIMEOUT = Duration.ofSeconds(30);
+    // Writes to stdin are passed on in pieces this size, each one counting as progress
+    private static final int STDIN_PIECE_BYTES = 4096;
+
+    private final Set<Supervised> live = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "process-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong killed = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+
+    ProcessSupervisor() {
+        watchdog.scheduleWithFixedDelay(this::check, WATCHDOG_PERIOD_MILLIS, WATCHDOG_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // stdout goes to sink (discarded when null) unless the builder redirects it.
+    // deadline and stallTimeout may be null to disable them.
+    Supervised start(String group, String name, ProcessBuilder pb, OutputStream sink,
+                     Duration deadline, Duration stallTimeout) throws IOException {
+        Process process = pb.start();
+        started.incrementAndGet();
+        Supervised supervised = new Supervised(group, name, process, stallTimeout);
+        supervised.arm(deadline);
+        live.add(supervised);
+        supervised.drain(process.getInputStream(), sink, "stdout");
+        supervised.drain(process.getErrorStream(), null, "stderr");
+        process.onExit().thenRun(() -> {
+            live.remove(supervised);
+            supervised.exited();
+        });
+        return supervised;
+    }
+
+    void killGroup(String group) {
+        for (Supervised supervised : live) {
+            if (supervised.group.equals(group)) {
+                supervised.kill();
+            }
+        }
+    }
+
+    void killAll() {
+        for (Supervised supervised : live) {
+            supervised.kill();
+        }
+    }
+
+    void recordRestart() {
+        restarts.incrementAndGet();
+    }
+
+    String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("  Started: %d, running: %d%n", started.get(), live.size()));
+        sb.append(String.format("  Failed: %d (timeouts %d, stalls %d)%n", failed.get(), timeouts.get(), stalls.get()));
+        sb.append(String.format("  Killed on request: %d, restarts: %d%n", killed.get(), restarts.get()));
+        List<String> names = new ArrayList<>();
+        for (Supervised supervised : live) {
+            names.add(supervised.name);
+        }
+        if (!names.isEmpty()) {
+            sb.append("  Running: ").append(String.join(", ", names)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        for (Supervised supervised : live) {
+            supervised.check(now);
+        }
+    }
+
+    static final class ProcessTimeoutException extends IOException {
+        ProcessTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    final class Supervised {
+        final String group;
+        final String name;
+        final Process process;
+        private final Duration stallTimeout;
+
+        private volatile boolean active;
+        private volatile long deadlineNanos = Long.MAX_VALUE;
+        private volatile long lastActivityNanos = System.nanoTime();
+        private volatile LongSupplier progressProbe;
+        private volatile long lastProgress = Long.MIN_VALUE;
+        private volatile String failure;
+        private volatile boolean userKilled;
+        // Our side is blocking the process: its output consumer is busy, or (for
+        // stdin-watched players) nothing is being written to it
+        private volatile boolean sinkBusy;
+        private volatile boolean stdinWatched;
+        private volatile boolean writing;
+        private final OutputStream stdin;
+
+        private final byte[] errorTail = new byte[ERROR_TAIL_BYTES];
+        private int errorTailLength;
+        private final List<Thread> drains = new ArrayList<>(2);
+
+        private Supervised(String group, String name, Process process, Duration stallTimeout) {
+            this.group = group;
+            this.name = name;
+            this.process = process;
+            this.stallTimeout = stallTimeout;
+            this.stdin = new StdinStream(process.getOutputStream());
+        }
+
+        OutputStream stdin() {
+            return stdin;
+        }
+
+        boolean isAlive() {
+            return process.isAlive();
+        }
+
+        // Starts a new per-call deadline, e.g. for each request to a long-lived worker
+        void arm(Duration deadline) {
+            lastActivityNanos = System.nanoTime();
+            deadlineNanos = deadline == null ? Long.MAX_VALUE : System.nanoTime() + deadline.toNanos();
+            active = true;
+        }
+
+        // Idle between calls: no deadline, silence is expected
+        void disarm() {
+            active = false;
+        }
+
+        // Extra progress signal for processes that write to a file instead of stdout
+        void watchProgress(LongSupplier probe) {
+            progressProbe = probe;
+        }
+
+        // CPU time used as the progress signal, for processes that may work for a
+        // while without output (a model loading, a player with nothing to print).
+        // Where the platform doesn't report it, the process always counts as busy.
+        void watchCpu() {
+            ProcessHandle handle = process.toHandle();
+            watchProgress(() -> handle.info().totalCpuDuration()
+                .map(Duration::toNanos)
+                .orElseGet(System::nanoTime));
+        }
+
+        // Players: stdin taking data is the progress signal, and a stall is only
+        // looked for while a write is blocked. Waiting for the next chunk is not one.
+        void watchStdin() {
+            stdinWatched = true;
+        }
+
+        // Waits for the process and its output to finish. Throws if the watchdog killed it.
+        int waitFor() throws IOException, InterruptedException {
+            int exitCode = process.waitFor();
+            for (Thread drain : drains) {
+                drain.join();
+            }
+            if (failure != null) {
+                throw new ProcessTimeoutException(name + " " + failure);
+            }
+            return exitCode;
+        }
+
+        boolean wasKilled() {
+            return userKilled || failure != null;
+        }
+
+        String failure() {
+            return failure;
+        }
+
+        synchronized String errorOutput() {
+            return new String(errorTail, 0, errorTailLength, StandardCharsets.UTF_8).trim();
+        }
+
+        void kill() {
+            if (process.isAlive()) {
+                userKilled = true;
+                killed.incrementAndGet();
+                killTree();
+            }
+        }
+
+        private void killTree() {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+
+        private void exited() {
+            if (failure == null && !userKilled && process.exitValue() != 0) {
+                failed.incrementAndGet();
+            }
+        }
+
+        private void check(long now) {
+            if (!active || !process.isAlive() || failure != null) {
+                return;
+            }
+            if (sinkBusy || (stdinWatched && !writing)) {
+                // Held back by us
+                lastActivityNanos = now;
+            }
+            LongSupplier probe = progressProbe;
+            if (probe != null) {
+                long progress = probe.getAsLong();
+                if (progress != lastProgress) {
+                    lastProgress = progress;
+                    lastActivityNanos = now;
+                }
+            }
+            if (deadlineNanos != Long.MAX_VALUE && now - deadlineNanos > 0) {
+                fail("timed out", timeouts);
+            } else if (stallTimeout != null && now - lastActivityNanos > stallTimeout.toNanos()) {
+                fail(String.format("stalled (no progress for %.1f s)", stallTimeout.toMillis() / 1000.0), stalls);
+            }
+        }
+
+        private void fail(String reason, AtomicLong counter) {
+            failure = reason;
+            counter.incrementAndGet();
+            failed.incrementAndGet();
+            killTree();
+        }
+
+        private void drain(InputStream in, OutputStream sink, String stream) {
+            Thread drain = new Thread(() -> {
+                byte[] buffer = new byte[8192];
+                OutputStream target = sink;
+                try (in) {
+                    int n;
+                    while ((n = in.read(buffer)) >= 0) {
+                        lastActivityNanos = System.nanoTime();
+                        if (target != null) {
+                            sinkBusy = true;
+                            try {
+                                target.write(buffer, 0, n);
+                            } catch (IOException e) {
+                                // Consumer gave up: keep draining so the process can't block
+                                target = null;
+                            } finally {
+                                sinkBusy = false;
+                                lastActivityNanos = System.nanoTime();
+                            }
+                        } else if (sink == null && stream.equals("stderr")) {
+                            keepErrorTail(buffer, n);
+                        }
+                    }
+                    if (target != null) {
+                        target.flush();
+                    }
+                } catch (IOException ignored) {
+                    // Process killed
+                }
+            }, name + "-" + stream);
+            drain.setDaemon(true);
+            drains.add(drain);
+            drain.start();
+        }
+
+        // Marks writes in progress and every piece that gets through
+        private final class StdinStream extends OutputStream {
+            private final OutputStream out;
+
+            StdinStream(OutputStream out) {
+                this.out = out;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                lastActivityNanos = System.nanoTime();
+                writing = true;
+                try {
+                    while (len > 0) {
+                        int n = Math.min(len, STDIN_PIECE_BYTES);
+                        out.write(b, off, n);
+                        lastActivityNanos = System.nanoTime();
+                        off += n;
+                        len -= n;
+                    }
+                } finally {
+                    writing = false;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        }
+
+        private synchronized void keepErrorTail(byte[] buffer, int n) {
+            if (n >= errorTail.length) {
+                System.arraycopy(buffer, n - errorTail.length, errorTail, 0, errorTail.length);
+                errorTailLength = errorTail.length;
+                return;
+            }
+            int keep = Math.min(errorTailLength, errorTail.length - n);
+            System.arraycopy(errorTail, errorTailLength - keep, errorTail, 0, keep);
+            System.arraycopy(buffer, 0, errorTail, keep, n);
+            errorTailLength = keep + n;
+        }
+    }
+}
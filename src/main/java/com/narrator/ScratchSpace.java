@@ -0,0 +1,379 @@
+package com.narrator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Scratch storage for intermediate audio and images. Data lives in pooled direct
+// 1 MiB slabs; an item only spills to a file in a private, size-capped directory
+// when it outgrows the per-item limit or the pool is exhausted (or a tool insists
+// on a path). Everything is handed back the moment the Buffer is closed.
+final class ScratchSpace {
+
+    static final int SLAB_SIZE = 1024 * 1024;
+
+    private final Path dir;
+    private final int maxSlabs;
+    private final long inMemoryLimit;
+    private final long diskCap;
+
+    private final ArrayDeque<ByteBuffer> freeSlabs = new ArrayDeque<>();
+    private int allocatedSlabs;
+    private int slabsInUse;
+    private long diskUsed;
+    private long spillCount;
+    private long fileCounter;
+
+    ScratchSpace(Path dir, long memoryCap, long inMemoryLimit, long diskCap) {
+        this.dir = dir;
+        this.maxSlabs = (int) Math.max(1, memoryCap / SLAB_SIZE);
+        this.inMemoryLimit = inMemoryLimit;
+        this.diskCap = diskCap;
+    }
+
+    // One directory per process under java.io.tmpdir. Leftovers from processes
+    // that are no longer running are removed, ours is removed on exit.
+    static ScratchSpace createDefault() {
+        Path base = Path.of(System.getProperty("java.io.tmpdir"));
+        long pid = ProcessHandle.current().pid();
+        removeStaleDirectories(base);
+
+        ScratchSpace scratch = new ScratchSpace(
+            base.resolve("jnarrator-scratch-" + pid),
+            64L * 1024 * 1024,
+            16L * 1024 * 1024,
+            512L * 1024 * 1024
+        );
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteTree(scratch.dir), "scratch-cleanup"));
+        return scratch;
+    }
+
+    Buffer allocate(String suffix) {
+        return new Buffer(suffix);
+    }
+
+    // Reads the stream to the end into a new buffer
+    Buffer read(InputStream in, String suffix) throws IOException {
+        Buffer buffer = new Buffer(suffix);
+        try (OutputStream out = buffer.outputStream()) {
+            in.transferTo(out);
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+        return buffer;
+    }
+
+    synchronized long memoryInUse() {
+        return (long) slabsInUse * SLAB_SIZE;
+    }
+
+    synchronized long memoryReserved() {
+        return (long) allocatedSlabs * SLAB_SIZE;
+    }
+
+    synchronized long diskInUse() {
+        return diskUsed;
+    }
+
+    synchronized long spillCount() {
+        return spillCount;
+    }
+
+    Path directory() {
+        return dir;
+    }
+
+    private synchronized ByteBuffer takeSlab() {
+        ByteBuffer slab = freeSlabs.pollFirst();
+        if (slab == null) {
+            if (allocatedSlabs >= maxSlabs) {
+                return null;
+            }
+            slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+            allocatedSlabs++;
+        }
+        slabsInUse++;
+        return slab;
+    }
+
+    private synchronized void returnSlabs(List<ByteBuffer> slabs) {
+        for (ByteBuffer slab : slabs) {
+            slab.clear();
+            freeSlabs.addFirst(slab);
+            slabsInUse--;
+        }
+        slabs.clear();
+    }
+
+    private synchronized void reserveDisk(long bytes) throws IOException {
+        if (diskUsed + bytes > diskCap) {
+            throw new IOException(String.format("Scratch space full (%d MB cap)", diskCap / (1024 * 1024)));
+        }
+        diskUsed += bytes;
+    }
+
+    private synchronized void releaseDisk(long bytes) {
+        diskUsed -= bytes;
+    }
+
+    private synchronized Path newSpillPath(String suffix) throws IOException {
+        Files.createDirectories(dir);
+        spillCount++;
+        return dir.resolve("scratch-" + (++fileCounter) + suffix);
+    }
+
+    private static void removeStaleDirectories(Path base) {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(base, "jnarrator-scratch-*")) {
+            for (Path stale : dirs) {
+                String name = stale.getFileName().toString();
+                try {
+                    long pid = Long.parseLong(name.substring("jnarrator-scratch-".length()));
+                    if (ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                        continue;
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Not ours
+                    continue;
+                }
+                deleteTree(stale);
+            }
+        } catch (IOException ignored) {
+            // Nothing to clean up
+        }
+    }
+
+    private static void deleteTree(Path root) {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    // A growable byte sequence: in-memory slabs first, a spill file once too big.
+    // Written once, then read any number of times; not thread-safe while writing.
+    final class Buffer implements AutoCloseable {
+        private final String suffix;
+        private final List<ByteBuffer> slabs = new ArrayList<>();
+        private long size;
+        private Path spillFile;
+        private FileChannel spillChannel;
+        private boolean closed;
+
+        private Buffer(String suffix) {
+            this.suffix = suffix;
+        }
+
+        long size() {
+            return size;
+        }
+
+        boolean isInMemory() {
+            return spillFile == null;
+        }
+
+        OutputStream outputStream() {
+            return new OutputStream() {
+                private final byte[] one = new byte[1];
+
+                @Override
+                public void write(int b) throws IOException {
+                    one[0] = (byte) b;
+                    write(one, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    append(ByteBuffer.wrap(b, off, len));
+                }
+            };
+        }
+
+        void append(ByteBuffer src) throws IOException {
+            ensureOpen();
+            while (src.hasRemaining()) {
+                if (spillFile != null) {
+                    int n = src.remaining();
+                    reserveDisk(n);
+                    try {
+                        while (src.hasRemaining()) {
+                            spillChannel.write(src);
+                        }
+                    } catch (IOException e) {
+                        // close() only gives back what was counted in size
+                        releaseDisk(n);
+                        throw e;
+                    }
+                    size += n;
+                    continue;
+                }
+                ByteBuffer tail = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+                if (tail == null || !tail.hasRemaining()) {
+                    tail = size + src.remaining() <= inMemoryLimit ? takeSlab() : null;
+                    if (tail == null) {
+                        spill();
+                        continue;
+                    }
+                    slabs.add(tail);
+                }
+                int n = Math.min(tail.remaining(), src.remaining());
+                ByteBuffer part = src.duplicate();
+                part.limit(part.position() + n);
+                tail.put(part);
+                src.position(src.position() + n);
+                size += n;
+            }
+        }
+
+        // Overwrites already written bytes, e.g. a header whose lengths are only known at the end
+        void patch(long offset, byte[] bytes) throws IOException {
+            ensureOpen();
+            if (offset + bytes.length > size) {
+                throw new IOException("Patch beyond end of scratch buffer");
+            }
+            if (spillFile != null) {
+                spillChannel.write(ByteBuffer.wrap(bytes), offset);
+                return;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                long pos = offset + i;
+                slabs.get((int) (pos / SLAB_SIZE)).put((int) (pos % SLAB_SIZE), bytes[i]);
+            }
+        }
+
+        InputStream inputStream() throws IOException {
+            ensureOpen();
+            if (spillFile != null) {
+                return Files.newInputStream(spillFile);
+            }
+            List<ByteBuffer> views = new ArrayList<>(slabs.size());
+            for (ByteBuffer slab : slabs) {
+                views.add(slab.duplicate().flip());
+            }
+            return new InputStream() {
+                private final byte[] one = new byte[1];
+                private int index;
+
+                @Override
+                public int read() {
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    while (index < views.size() && !views.get(index).hasRemaining()) {
+                        index++;
+                    }
+                    if (index >= views.size()) {
+                        return -1;
+                    }
+                    ByteBuffer view = views.get(index);
+                    int n = Math.min(len, view.remaining());
+                    view.get(b, off, n);
+                    return n;
+                }
+            };
+        }
+
+        // For tools that only take a path. Spills the data if it is still in memory.
+        Path file() throws IOException {
+            ensureOpen();
+            if (spillFile == null) {
+                spill();
+            }
+            return spillFile;
+        }
+
+        private void spill() throws IOException {
+            reserveDisk(size);
+            Path path = newSpillPath(suffix);
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                releaseDisk(size);
+                throw e;
+            }
+            try {
+                for (ByteBuffer slab : slabs) {
+                    ByteBuffer data = slab.duplicate().flip();
+                    while (data.hasRemaining()) {
+                        channel.write(data);
+                    }
+                }
+            } catch (IOException e) {
+                // Disk full, most likely: the data is still in the slabs, undo the rest
+                try {
+                    channel.close();
+                    Files.deleteIfExists(path);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                releaseDisk(size);
+                throw e;
+            }
+            returnSlabs(slabs);
+            spillFile = path;
+            spillChannel = channel;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            if (spillFile != null) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = 0;
+                while (position < size) {
+                    position += spillChannel.transferTo(position, size - position, target);
+                }
+                return;
+            }
+            try (InputStream in = inputStream()) {
+                in.transferTo(out);
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Scratch buffer already released");
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            returnSlabs(slabs);
+            if (spillFile != null) {
+                try {
+                    spillChannel.close();
+                    Files.deleteIfExists(spillFile);
+                } catch (IOException ignored) {
+                }
+                releaseDisk(size);
+            }
+        }
+    }
+}
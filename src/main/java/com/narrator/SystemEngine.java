@@ -0,0 +1,171 @@
+package com.narrator;
+
+import com.narrator.engine.AudioChunk;
+import com.narrator.engine.PcmPublisher;
+import com.narrator.engine.SpeechEngine;
+import com.narrator.engine.SpeechRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Flow;
+
+// The platform's own speech synthesizer behind the engine API. espeak-ng writes
+// WAV to stdout, which is streamed as it comes, one run per group of sentences so
+// every chunk carries the text it speaks; SAPI and say can only write files, so
+// their output is rendered to the scratch directory first. Text is normalized
+// (TextNormalizer) the same way as for Piper.
+final class SystemEngine implements SpeechEngine {
+
+    // For engines that write a file: no growth for this long means they hung
+    private static final Duration STALL_TIMEOUT = Duration.ofSeconds(60);
+    // espeak-ng streaming: no output for this long while we are ready for more
+    private static final Duration STREAM_STALL_TIMEOUT = Duration.ofSeconds(15);
+    // espeak-ng utterances: short first so audio starts early, then larger ones
+    private static final int FIRST_UTTERANCE_CHARS = ChunkedNarrator.FIRST_CHUNK_CHARS;
+    private static final int UTTERANCE_CHARS = 600;
+
+    private final ScratchSpace scratch;
+    private final ProcessSupervisor supervisor;
+    private final String group;
+
+    // group: the supervisor group the engine process runs in
+    SystemEngine(ScratchSpace scratch, ProcessSupervisor supervisor, String group) {
+        this.scratch = scratch;
+        this.supervisor = supervisor;
+        this.group = group;
+    }
+
+    @Override
+    public String name() {
+        return "System";
+    }
+
+    // request.voice() is "Male" or "Female" (only used by macOS)
+    @Override
+    public Flow.Publisher<AudioChunk> synthesize(SpeechRequest request) {
+        return new PcmPublisher(emitter -> {
+            String os = System.getProperty("os.name").toLowerCase();
+            if (os.contains("win") || os.contains("mac")) {
+                renderToFile(request, os.contains("win"), emitter);
+            } else {
+                stream(request, emitter);
+            }
+        }, EngineStreams.threadPerStream("system-stream"));
+    }
+
+    private void stream(SpeechRequest request, PcmPublisher.Emitter emitter) throws Exception {
+        TextNormalizer sentences = new TextNormalizer(new StringReader(request.text()));
+        StringBuilder spoken = new StringBuilder();
+        boolean more = sentences.next();
+        int limit = FIRST_UTTERANCE_CHARS;
+        while (more && !emitter.isCancelled()) {
+            // Normalized text to espeak-ng, source offsets on the chunks
+            int start = sentences.start();
+            int end;
+            spoken.setLength(0);
+            do {
+                if (spoken.length() > 0) {
+                    spoken.append(' ');
+                }
+                spoken.append(sentences.text());
+                end = sentences.end();
+                more = sentences.next();
+            } while (more && spoken.length() + 1 + sentences.text().length() <= limit);
+            limit = UTTERANCE_CHARS;
+
+            if (!streamUtterance(request, spoken.toString(), start, end, emitter)) {
+                return;
+            }
+        }
+    }
+
+    // False if the run was cancelled or stopped
+    private boolean streamUtterance(SpeechRequest request, String text, int start, int end,
+                                    PcmPublisher.Emitter emitter) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder("espeak-ng", "--stdout",
+            "-s", String.valueOf((int) (160 * request.speed())),
+            "-a", String.valueOf(request.volume() * 2), text);
+        EngineStreams.WavSink sink = new EngineStreams.WavSink(emitter, start, end);
+        // The deadline covers the audio: a real-time consumer holds the engine back
+        ProcessSupervisor.Supervised p = supervisor.start(group, "espeak-ng", pb, sink,
+            deadline(text.length(), request.speed()), STREAM_STALL_TIMEOUT);
+        int exitCode;
+        try {
+            exitCode = p.waitFor();
+        } catch (InterruptedException e) {
+            p.kill();
+            throw e;
+        }
+        // Cancelled, or stopped through its process group
+        if (emitter.isCancelled() || (p.wasKilled() && p.failure() == null)) {
+            return false;
+        }
+        if (exitCode != 0) {
+            throw new IOException("espeak-ng failed (exit code " + exitCode + ")" + errorDetail(p));
+        }
+        sink.finish();
+        return true;
+    }
+
+    private void renderToFile(SpeechRequest request, boolean windows, PcmPublisher.Emitter emitter) throws Exception {
+        String text = TextNormalizer.spoken(request.text());
+        // The scratch directory only exists once something has spilled
+        Files.createDirectories(scratch.directory());
+        Path wav = Files.createTempFile(scratch.directory(), "system-", ".wav");
+        try {
+            ProcessBuilder pb;
+            if (windows) {
+                String script = String.format(
+                    "Add-Type -AssemblyName System.Speech; " +
+                    "$synth = New-Object System.Speech.Synthesis.SpeechSynthesizer; " +
+                    "$synth.Rate = %d; " +
+                    "$synth.Volume = %d; " +
+                    "$synth.SetOutputToWaveFile('%s'); " +
+                    "$synth.Speak('%s'); " +
+                    "$synth.Dispose()",
+                    (int) ((request.speed() - 1.0) * 10), request.volume(),
+                    wav.toAbsolutePath().toString().replace("'", "''"),
+                    text.replace("'", "''").replace("\n", " ")
+                );
+                pb = new ProcessBuilder("powershell", "-Command", script);
+            } else {
+                String voice = "Female".equals(request.voice()) ? "Samantha" : "Alex";
+                pb = new ProcessBuilder("say", "-v", voice, "-r", String.valueOf((int) (175 * request.speed())),
+                    "-o", wav.toAbsolutePath().toString(), "--file-format=WAVE", "--data-format=LEI16@22050", text);
+            }
+
+            ProcessSupervisor.Supervised p = supervisor.start(group, pb.command().get(0), pb, null,
+                Duration.ofSeconds(30).plusMillis(text.length() * 50L), STALL_TIMEOUT);
+            p.watchProgress(wav.toFile()::length);
+            int exitCode;
+            try {
+                exitCode = p.waitFor();
+            } catch (InterruptedException e) {
+                p.kill();
+                throw e;
+            }
+            if (exitCode != 0) {
+                throw new IOException(pb.command().get(0) + " failed (exit code " + exitCode + ")" + errorDetail(p));
+            }
+            try (InputStream in = Files.newInputStream(wav)) {
+                EngineStreams.emitWav(in, 0, request.text().length(), emitter);
+            }
+        } finally {
+            Files.deleteIfExists(wav);
+        }
+    }
+
+    // Generous upper bound: ~7 characters per second at 1.0x, plus startup
+    private static Duration deadline(int chars, double speed) {
+        return Duration.ofSeconds(15).plusMillis((long) (chars * 150 / speed));
+    }
+
+    private static String errorDetail(ProcessSupervisor.Supervised p) {
+        String error = p.errorOutput();
+        return error.isEmpty() ? "" : ": " + error;
+    }
+}
@@ -0,0 +1,45 @@
+package com.narrator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Memory figures from /proc (Linux). Everything returns -1 where /proc isn't
+// available, and callers treat that as "unknown", not as "no memory".
+final class SystemMemory {
+
+    private SystemMemory() {
+    }
+
+    static long availableBytes() {
+        return field(Path.of("/proc/meminfo"), "MemAvailable:");
+    }
+
+    static long totalBytes() {
+        return field(Path.of("/proc/meminfo"), "MemTotal:");
+    }
+
+    // Resident set size of a process
+    static long residentBytes(long pid) {
+        return field(Path.of("/proc", String.valueOf(pid), "status"), "VmRSS:");
+    }
+
+    // Lines look like "MemAvailable:    1234567 kB"
+    private static long field(Path file, String name) {
+        if (!Files.isReadable(file)) {
+            return -1;
+        }
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(name)) {
+                    String[] parts = line.substring(name.length()).trim().split("\\s+");
+                    return Long.parseLong(parts[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,796 @@
+package com.narrator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Turns text as typed, opened or recognized into what should be spoken, one
+// sentence at a time. Markdown markup is dropped, fenced code blocks are replaced
+// by a short placeholder, words hyphenated across OCR line breaks are joined again,
+// stray pipes removed, and common abbreviations and numbers written out. Every sentence carries the [start, end) range of source
+// text it came from, so its audio can still be placed in the editor.
+//
+// Reads incrementally through a fixed buffer and a few reused builders, so input
+// of any size is never held in memory; text() is only valid until the next call
+// to next(). Sentences end at . ! ? (not after abbreviations or initials, and
+// at ! ? only before a capital), at paragraph breaks, headings, list items and
+// table rows, and run-ons are split at clause punctuation past
+// SOFT_SENTENCE_CHARS and anywhere past HARD_SENTENCE_CHARS.
+final class TextNormalizer {
+
+    record Sentence(String text, int start, int end) {}
+
+    static final int SOFT_SENTENCE_CHARS = 250;
+    static final int HARD_SENTENCE_CHARS = 400;
+    private static final int MAX_WORD_CHARS = 1024;
+    private static final int BUFFER_SIZE = 8192;
+    // Spoken instead of a fenced code block, as a sentence of its own
+    static final String CODE_BLOCK = "Code block.";
+
+    private enum Boundary { NONE, WEAK, STRONG }
+
+    private enum Marker { NONE, HEADING, ITEM, QUOTE, FENCE, RULE }
+
+    // Written out before a period. Lower case entries match any case; the period
+    // stays (and may end the sentence) only where mayEnd is set.
+    record Abbreviation(String text, String expansion, boolean mayEnd) {}
+
+    private static final List<Abbreviation> ABBREVIATIONS = List.of(
+        new Abbreviation("Mr", "Mister", false),
+        new Abbreviation("Mrs", "Missus", false),
+        new Abbreviation("Ms", "Miz", false),
+        new Abbreviation("Dr", "Doctor", false),
+        new Abbreviation("Prof", "Professor", false),
+        new Abbreviation("Mt", "Mount", false),
+        new Abbreviation("Jr", "Junior", true),
+        new Abbreviation("Sr", "Senior", true),
+        new Abbreviation("Gen", "General", false),
+        new Abbreviation("Capt", "Captain", false),
+        new Abbreviation("Lt", "Lieutenant", false),
+        new Abbreviation("Sgt", "Sergeant", false),
+        new Abbreviation("Rev", "Reverend", false),
+        new Abbreviation("Fig", "Figure", false),
+        new Abbreviation("e.g", "for example", false),
+        new Abbreviation("i.e", "that is", false),
+        new Abbreviation("vs", "versus", false),
+        new Abbreviation("etc", "et cetera", true),
+        new Abbreviation("approx", "approximately", false),
+        new Abbreviation("Jan", "January", true),
+        new Abbreviation("Feb", "February", true),
+        new Abbreviation("Apr", "April", true),
+        new Abbreviation("Aug", "August", true),
+        new Abbreviation("Sep", "September", true),
+        new Abbreviation("Sept", "September", true),
+        new Abbreviation("Oct", "October", true),
+        new Abbreviation("Nov", "November", true),
+        new Abbreviation("Dec", "December", true)
+    );
+
+    private static final String[] ONES = {
+        "zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten",
+        "eleven", "twelve", "thirteen", "fourteen", "fifteen", "sixteen", "seventeen", "eighteen", "nineteen"
+    };
+    private static final String[] TENS = {
+        "", "", "twenty", "thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety"
+    };
+    private static final String[] SCALES = {"trillion", "billion", "million", "thousand"};
+    private static final long[] SCALE_VALUES = {1_000_000_000_000L, 1_000_000_000L, 1_000_000L, 1_000L};
+    // Longer digit runs are left to the engine
+    private static final int MAX_NUMBER_DIGITS = 15;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position, limit;
+    private boolean eof;
+    // Source offset of buffer[position]
+    private int offset;
+
+    // The word just read, and where it stands in its line
+    private final StringBuilder word = new StringBuilder();
+    private int wordStart, wordEnd, wordNewlines;
+    private boolean wordLineStart, wordPipeLine;
+    private boolean held;
+    private boolean firstWord = true;
+    private boolean lineHasContent;
+    private boolean pipeLine;
+
+    // A word ending in a hyphen, kept until the next word shows whether it was
+    // split at a line break
+    private final StringBuilder carry = new StringBuilder();
+    private int carryStart, carryEnd, carryNewlines;
+    private boolean carryLineStart, carryPipeLine;
+
+    // A word with markup removed
+    private final StringBuilder token = new StringBuilder();
+
+    // The sentence being built and the last completed one (swapped on completion)
+    private StringBuilder building = new StringBuilder();
+    private StringBuilder current = new StringBuilder();
+    private int buildingStart, buildingEnd;
+    private int currentStart, currentEnd;
+    private boolean ready;
+    private Boundary pending = Boundary.NONE;
+    // Period of an abbreviation like "etc.", dropped if the sentence goes on
+    private int abbreviationDot = -1;
+    private boolean lineEndsSentence;
+    // Fence character (` or ~) while inside a fenced code block, else 0
+    private char fence;
+
+    TextNormalizer(Reader in) {
+        this.in = in;
+    }
+
+    // All sentences of a (short) text
+    static List<Sentence> sentences(String text) {
+        List<Sentence> sentences = new ArrayList<>();
+        TextNormalizer normalizer = new TextNormalizer(new StringReader(text));
+        try {
+            while (normalizer.next()) {
+                sentences.add(new Sentence(normalizer.text().toString(), normalizer.start(), normalizer.end()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sentences;
+    }
+
+    // The whole text as it should be spoken, for engines that take it in one piece
+    static String spoken(String text) {
+        StringBuilder spoken = new StringBuilder(text.length());
+        TextNormalizer normalizer = new TextNormalizer(new StringReader(text));
+        try {
+            while (normalizer.next()) {
+                if (spoken.length() > 0) {
+                    spoken.append(' ');
+                }
+                spoken.append(normalizer.text());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return spoken.toString();
+    }
+
+    // Advances to the next sentence; false at the end of the input
+    boolean next() throws IOException {
+        while (!ready) {
+            if (!held && !readWord()) {
+                if (carry.length() > 0) {
+                    flushCarry();
+                    continue;
+                }
+                close();
+                if (!ready) {
+                    return false;
+                }
+                break;
+            }
+            held = false;
+            if (carry.length() > 0) {
+                if (wordNewlines == 1 && Character.isLetterOrDigit(word.charAt(0))) {
+                    // "exam-\nple" is one word, "Well-\nKnown" keeps its hyphen
+                    if (Character.isLowerCase(word.charAt(0))) {
+                        carry.setLength(carry.length() - 1);
+                    }
+                    carry.append(word);
+                    word.setLength(0);
+                    word.append(carry);
+                    carry.setLength(0);
+                    wordStart = carryStart;
+                    wordNewlines = carryNewlines;
+                    wordLineStart = carryLineStart;
+                    wordPipeLine = carryPipeLine;
+                } else {
+                    flushCarry();
+                    if (ready) {
+                        // Only one sentence per call: this word starts the next one
+                        held = true;
+                        break;
+                    }
+                }
+            }
+            if (endsWithHyphen(word)) {
+                carry.setLength(0);
+                carry.append(word);
+                carryStart = wordStart;
+                carryEnd = wordEnd;
+                carryNewlines = wordNewlines;
+                carryLineStart = wordLineStart;
+                carryPipeLine = wordPipeLine;
+                continue;
+            }
+            process(word, wordStart, wordEnd, wordNewlines, wordLineStart, wordPipeLine);
+        }
+        ready = false;
+        return true;
+    }
+
+    // The current sentence as it should be spoken
+    CharSequence text() {
+        return current;
+    }
+
+    int start() {
+        return currentStart;
+    }
+
+    int end() {
+        return currentEnd;
+    }
+
+    private void flushCarry() {
+        process(carry, carryStart, carryEnd, carryNewlines, carryLineStart, carryPipeLine);
+        carry.setLength(0);
+    }
+
+    // Next run of non-blank characters; '|' counts as blank
+    private boolean readWord() throws IOException {
+        int newlines = 0;
+        int c;
+        while ((c = peek()) >= 0 && (isBlank(c) || c == '|')) {
+            if (c == '\n') {
+                newlines++;
+                lineHasContent = false;
+                pipeLine = false;
+            } else if (c == '|' && !lineHasContent) {
+                pipeLine = true;
+                lineHasContent = true;
+            }
+            advance();
+        }
+        if (c < 0) {
+            return false;
+        }
+        word.setLength(0);
+        wordStart = offset;
+        while ((c = peek()) >= 0 && !isBlank(c) && c != '|' && word.length() < MAX_WORD_CHARS) {
+            word.append((char) c);
+            advance();
+        }
+        wordEnd = offset;
+        wordNewlines = newlines;
+        wordLineStart = firstWord || newlines > 0;
+        wordPipeLine = pipeLine && wordLineStart;
+        firstWord = false;
+        lineHasContent = true;
+        return true;
+    }
+
+    private void process(CharSequence w, int start, int end, int newlines, boolean lineStart, boolean tableRow) {
+        if (fence != 0) {
+            // Code is not read out; the placeholder's range grows to cover it
+            buildingEnd = end;
+            if (lineStart && marker(w) == Marker.FENCE && w.charAt(0) == fence) {
+                fence = 0;
+                lineEndsSentence = true;
+                close();
+            }
+            return;
+        }
+        boolean closeBefore = newlines >= 2 || lineStart && lineEndsSentence;
+        if (lineStart) {
+            lineEndsSentence = false;
+            if (tableRow) {
+                closeBefore = true;
+                lineEndsSentence = true;
+            }
+            Marker marker = marker(w);
+            if (marker == Marker.FENCE) {
+                close();
+                fence = w.charAt(0);
+                building.append(CODE_BLOCK);
+                buildingStart = start;
+                buildingEnd = end;
+                return;
+            }
+            if (marker != Marker.NONE) {
+                // Dropped; anything but a quote stands on its own line
+                if (marker != Marker.QUOTE) {
+                    closeBefore = true;
+                    lineEndsSentence = true;
+                }
+                if (closeBefore) {
+                    close();
+                }
+                return;
+            }
+        }
+        if (pending == Boundary.STRONG || pending == Boundary.WEAK && startsUpperCase(w)
+                || building.length() >= HARD_SENTENCE_CHARS) {
+            closeBefore = true;
+        }
+        if (closeBefore) {
+            close();
+        } else if (abbreviationDot >= 0) {
+            building.deleteCharAt(abbreviationDot);
+        }
+        abbreviationDot = -1;
+
+        int mark = building.length();
+        Boundary boundary = speak(w);
+        if (building.length() == mark) {
+            return;
+        }
+        if (mark == 0) {
+            buildingStart = start;
+        }
+        buildingEnd = end;
+        pending = boundary;
+    }
+
+    private void close() {
+        pending = Boundary.NONE;
+        abbreviationDot = -1;
+        if (building.length() == 0) {
+            return;
+        }
+        StringBuilder done = building;
+        building = current;
+        current = done;
+        building.setLength(0);
+        currentStart = buildingStart;
+        currentEnd = buildingEnd;
+        ready = true;
+    }
+
+    // Markdown block markers, only looked for at the start of a line
+    private static Marker marker(CharSequence w) {
+        int n = w.length();
+        if (allOf(w, "#") && n <= 6) {
+            return Marker.HEADING;
+        }
+        if (allOf(w, ">")) {
+            return Marker.QUOTE;
+        }
+        if (n == 1 && "-*+•".indexOf(w.charAt(0)) >= 0) {
+            return Marker.ITEM;
+        }
+        if (n >= 2 && n <= 4 && (w.charAt(n - 1) == '.' || w.charAt(n - 1) == ')') && allDigits(w, 0, n - 1)) {
+            return Marker.ITEM;
+        }
+        if (n >= 3 && (startsWith(w, "```") || startsWith(w, "~~~"))) {
+            return Marker.FENCE;
+        }
+        if (n >= 3 && allOf(w, "-*_=")) {
+            return Marker.RULE;
+        }
+        return Marker.NONE;
+    }
+
+    // Appends the spoken form of one word to the sentence; returns the boundary it ends with
+    private Boundary speak(CharSequence w) {
+        removeMarkup(w);
+        int n = token.length();
+        if (n == 0 || allOf(token, "=_~#>") || n >= 3 && allOf(token, "-=_~:")) {
+            return Boundary.NONE;
+        }
+        if (building.length() > 0) {
+            building.append(' ');
+        }
+
+        int coreStart = 0;
+        while (coreStart < n && !Character.isLetterOrDigit(token.charAt(coreStart))) {
+            coreStart++;
+        }
+        if (coreStart == n) {
+            // Punctuation on its own, like a dash
+            building.append(token);
+            return boundary(0);
+        }
+        int coreEnd = n;
+        while (!Character.isLetterOrDigit(token.charAt(coreEnd - 1))) {
+            coreEnd--;
+        }
+
+        if (coreEnd < n && token.charAt(coreEnd) == '.') {
+            Abbreviation abbreviation = abbreviation(coreStart, coreEnd);
+            if (abbreviation != null) {
+                building.append(token, 0, coreStart).append(abbreviation.expansion());
+                if (abbreviation.mayEnd()) {
+                    abbreviationDot = building.length();
+                    building.append(token, coreEnd, n);
+                    return Boundary.WEAK;
+                }
+                building.append(token, coreEnd + 1, n);
+                return Boundary.NONE;
+            }
+            if (coreEnd - coreStart == 1 && Character.isUpperCase(token.charAt(coreStart))) {
+                // An initial
+                building.append(token);
+                return Boundary.NONE;
+            }
+            if (isInitialism(coreStart, coreEnd)) {
+                building.append(token);
+                return Boundary.WEAK;
+            }
+        }
+
+        if (!isAsciiDigit(token.charAt(coreStart)) || !number(coreStart, coreEnd)) {
+            building.append(token);
+        }
+        return boundary(coreEnd);
+    }
+
+    // Drops inline markdown: emphasis, code ticks, strike-through and link targets
+    private void removeMarkup(CharSequence w) {
+        token.setLength(0);
+        int n = w.length();
+        for (int i = 0; i < n; i++) {
+            char c = w.charAt(i);
+            switch (c) {
+                case '*', '`', '[' -> {
+                }
+                case '~' -> {
+                    if (i + 1 < n && w.charAt(i + 1) == '~') {
+                        i++;
+                    } else {
+                        token.append(c);
+                    }
+                }
+                case '!' -> {
+                    // ![image alt]
+                    if (i + 1 >= n || w.charAt(i + 1) != '[') {
+                        token.append(c);
+                    }
+                }
+                case ']' -> {
+                    // [text](target): skip the target
+                    if (i + 1 < n && w.charAt(i + 1) == '(') {
+                        int close = i + 2;
+                        while (close < n && w.charAt(close) != ')') {
+                            close++;
+                        }
+                        i = close;
+                    }
+                }
+                case '_' -> {
+                    // Kept inside words (snake_case), dropped around them
+                    if (i > 0 && i + 1 < n && Character.isLetterOrDigit(w.charAt(i - 1))
+                            && Character.isLetterOrDigit(w.charAt(i + 1))) {
+                        token.append(c);
+                    }
+                }
+                default -> token.append(c);
+            }
+        }
+    }
+
+    // What the punctuation from index on means for the sentence
+    private Boundary boundary(int from) {
+        int dots = 0;
+        for (int i = from; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '!' || c == '?') {
+                // "Stop!" he said
+                return Boundary.WEAK;
+            }
+            if (c == '.') {
+                dots++;
+            } else if (c == '…') {
+                return Boundary.WEAK;
+            }
+        }
+        if (dots == 1) {
+            return Boundary.STRONG;
+        }
+        if (dots > 1) {
+            // An ellipsis only ends the sentence before a capital
+            return Boundary.WEAK;
+        }
+        if (building.length() >= SOFT_SENTENCE_CHARS) {
+            for (int i = from; i < token.length(); i++) {
+                if (",;:—–-".indexOf(token.charAt(i)) >= 0) {
+                    return Boundary.STRONG;
+                }
+            }
+        }
+        return Boundary.NONE;
+    }
+
+    private Abbreviation abbreviation(int start, int end) {
+        for (Abbreviation abbreviation : ABBREVIATIONS) {
+            String text = abbreviation.text();
+            if (text.length() == end - start && regionMatches(text, start, Character.isLowerCase(text.charAt(0)))) {
+                return abbreviation;
+            }
+        }
+        return null;
+    }
+
+    private boolean regionMatches(String s, int start, boolean ignoreCase) {
+        for (int i = 0; i < s.length(); i++) {
+            char a = s.charAt(i);
+            char b = token.charAt(start + i);
+            if (a != b && !(ignoreCase && Character.toLowerCase(a) == Character.toLowerCase(b))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Letters separated by periods: U.S, a.m
+    private boolean isInitialism(int start, int end) {
+        if (end - start < 3) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = token.charAt(i);
+            if ((i - start) % 2 == 0 ? !Character.isLetter(c) : c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Writes out 42, 1,234.5, 3rd, 1984, 0800, $12.50 and 15%. False (nothing
+    // appended) for anything else that starts with a digit.
+    private boolean number(int coreStart, int coreEnd) {
+        int i = coreStart;
+        long whole = 0;
+        int digits = 0;
+        while (i < coreEnd && isAsciiDigit(token.charAt(i))) {
+            whole = whole * 10 + token.charAt(i++) - '0';
+            digits++;
+            if (digits > MAX_NUMBER_DIGITS) {
+                return false;
+            }
+        }
+        boolean grouped = false;
+        // Thousands groups: 1,234,567
+        while (i + 3 < coreEnd && token.charAt(i) == ',' && (digits <= 3 || grouped) && allDigits(token, i + 1, i + 4)
+                && (i + 4 == coreEnd || !isAsciiDigit(token.charAt(i + 4)))) {
+            whole = whole * 1000 + (token.charAt(i + 1) - '0') * 100 + (token.charAt(i + 2) - '0') * 10
+                + token.charAt(i + 3) - '0';
+            digits += 3;
+            grouped = true;
+            i += 4;
+            if (digits > MAX_NUMBER_DIGITS) {
+                return false;
+            }
+        }
+        int fractionStart = -1, fractionEnd = -1;
+        if (i + 1 < coreEnd && token.charAt(i) == '.' && isAsciiDigit(token.charAt(i + 1))) {
+            fractionStart = ++i;
+            while (i < coreEnd && isAsciiDigit(token.charAt(i))) {
+                i++;
+            }
+            fractionEnd = i;
+        }
+        boolean ordinal = false;
+        if (fractionStart < 0 && i + 2 == coreEnd) {
+            String suffix = token.substring(i, coreEnd).toLowerCase();
+            ordinal = suffix.equals("st") || suffix.equals("nd") || suffix.equals("rd") || suffix.equals("th");
+        }
+        if (i != coreEnd && !ordinal) {
+            return false;
+        }
+
+        boolean dollars = coreStart > 0 && token.charAt(coreStart - 1) == '$';
+        boolean percent = coreEnd < token.length() && token.charAt(coreEnd) == '%';
+        building.append(token, 0, dollars ? coreStart - 1 : coreStart);
+        if (ordinal) {
+            ordinal(whole);
+        } else if (digits > 1 && token.charAt(coreStart) == '0' && !grouped) {
+            // 007, 0800: digit by digit
+            digits(coreStart, coreStart + digits);
+        } else if (digits == 4 && !grouped && fractionStart < 0 && !dollars && !percent && isYear(whole)) {
+            year((int) whole);
+        } else {
+            cardinal(whole);
+        }
+
+        boolean cents = dollars && fractionStart >= 0 && fractionEnd - fractionStart == 2;
+        if (cents) {
+            building.append(whole == 1 ? " dollar" : " dollars");
+            int value = (token.charAt(fractionStart) - '0') * 10 + token.charAt(fractionStart + 1) - '0';
+            if (value > 0) {
+                building.append(" and ");
+                cardinal(value);
+                building.append(value == 1 ? " cent" : " cents");
+            }
+        } else {
+            if (fractionStart >= 0) {
+                building.append(" point ");
+                digits(fractionStart, fractionEnd);
+            }
+            if (dollars) {
+                building.append(whole == 1 && fractionStart < 0 ? " dollar" : " dollars");
+            }
+        }
+        if (percent) {
+            building.append(" percent").append(token, coreEnd + 1, token.length());
+        } else {
+            building.append(token, coreEnd, token.length());
+        }
+        return true;
+    }
+
+    private void digits(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (i > start) {
+                building.append(' ');
+            }
+            building.append(ONES[token.charAt(i) - '0']);
+        }
+    }
+
+    private void cardinal(long value) {
+        if (value == 0) {
+            building.append(ONES[0]);
+            return;
+        }
+        boolean space = false;
+        for (int s = 0; s < SCALES.length; s++) {
+            if (value >= SCALE_VALUES[s]) {
+                if (space) {
+                    building.append(' ');
+                }
+                hundreds((int) (value / SCALE_VALUES[s]));
+                building.append(' ').append(SCALES[s]);
+                value %= SCALE_VALUES[s];
+                space = true;
+            }
+        }
+        if (value > 0) {
+            if (space) {
+                building.append(' ');
+            }
+            hundreds((int) value);
+        }
+    }
+
+    // 1 to 999
+    private void hundreds(int value) {
+        if (value >= 100) {
+            building.append(ONES[value / 100]).append(" hundred");
+            value %= 100;
+            if (value > 0) {
+                building.append(' ');
+            }
+        }
+        if (value > 0) {
+            tens(value);
+        }
+    }
+
+    // 1 to 99
+    private void tens(int value) {
+        if (value < 20) {
+            building.append(ONES[value]);
+        } else {
+            building.append(TENS[value / 10]);
+            if (value % 10 > 0) {
+                building.append('-').append(ONES[value % 10]);
+            }
+        }
+    }
+
+    private void ordinal(long value) {
+        cardinal(value);
+        int end = building.length();
+        if (endsWith("one")) {
+            building.replace(end - 3, end, "first");
+        } else if (endsWith("two")) {
+            building.replace(end - 3, end, "second");
+        } else if (endsWith("three")) {
+            building.replace(end - 5, end, "third");
+        } else if (endsWith("five")) {
+            building.replace(end - 4, end, "fifth");
+        } else if (endsWith("eight")) {
+            building.append('h');
+        } else if (endsWith("nine")) {
+            building.replace(end - 4, end, "ninth");
+        } else if (endsWith("twelve")) {
+            building.replace(end - 6, end, "twelfth");
+        } else if (endsWith("y")) {
+            building.replace(end - 1, end, "ieth");
+        } else {
+            building.append("th");
+        }
+    }
+
+    // Read in pairs: nineteen eighty-four, eighteen oh five, twenty twenty-four
+    private static boolean isYear(long value) {
+        return value >= 1100 && value <= 1999 || value >= 2010 && value <= 2099;
+    }
+
+    private void year(int value) {
+        tens(value / 100);
+        int rest = value % 100;
+        if (rest == 0) {
+            building.append(" hundred");
+        } else if (rest < 10) {
+            building.append(" oh ").append(ONES[rest]);
+        } else {
+            building.append(' ');
+            tens(rest);
+        }
+    }
+
+    private boolean endsWith(String suffix) {
+        int start = building.length() - suffix.length();
+        if (start < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (building.charAt(start + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsUpperCase(CharSequence w) {
+        for (int i = 0; i < w.length(); i++) {
+            char c = w.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                return Character.isUpperCase(c);
+            }
+        }
+        return false;
+    }
+
+    private static boolean endsWithHyphen(CharSequence w) {
+        int n = w.length();
+        return n >= 2 && (w.charAt(n - 1) == '-' || w.charAt(n - 1) == '\u00AD') && Character.isLetter(w.charAt(n - 2));
+    }
+
+    private static boolean allOf(CharSequence w, String chars) {
+        for (int i = 0; i < w.length(); i++) {
+            if (chars.indexOf(w.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean allDigits(CharSequence w, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isAsciiDigit(w.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(CharSequence w, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (w.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isBlank(int c) {
+        return Character.isWhitespace(c) || c == '\u00A0';
+    }
+
+    private int peek() throws IOException {
+        while (position == limit) {
+            if (eof) {
+                return -1;
+            }
+            int read = in.read(buffer, 0, buffer.length);
+            position = 0;
+            limit = Math.max(0, read);
+            if (read < 0) {
+                eof = true;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+
+    private void advance() {
+        position++;
+        offset++;
+    }
+}
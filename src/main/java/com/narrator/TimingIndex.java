@@ -0,0 +1,141 @@
+package com.narrator;
+
+import java.util.Arrays;
+
+// Maps text offsets to PCM sample offsets for one narration. Segments (a chunk or
+// a whole item) are appended as they are synthesized and stamped with the wall
+// time their playback started, which is enough to tell where the playhead is in
+// the text. Inside a segment the position is interpolated by character count.
+// Sentence ranges, recorded once as the text is normalized, give the sentence
+// around the playhead without splitting the text again on every read-along tick.
+final class TimingIndex {
+
+    record Position(int textOffset, int segmentStart, int segmentEnd, int sentenceStart, int sentenceEnd,
+                    long playedSamples, double progress, long remainingMillis) {}
+
+    private final int textLength;
+    // Taken from the first segment; later segments are converted to it
+    private int sampleRate;
+
+    // Parallel arrays, one entry per segment
+    private int[] textStarts = new int[8];
+    private int[] textEnds = new int[8];
+    private long[] sampleStarts = new long[8];
+    private long[] sampleCounts = new long[8];
+    private long[] playStartNanos = new long[8];
+    private int size;
+    private int playing = -1;
+
+    // Sentence ranges in text order
+    private int[] sentenceStarts = new int[16];
+    private int[] sentenceEnds = new int[16];
+    private int sentences;
+
+    TimingIndex(int textLength) {
+        this.textLength = textLength;
+    }
+
+    // Returns the segment number. Audio for the same text range as the last
+    // segment (an utterance streamed in pieces) extends that segment.
+    synchronized int addSegment(int textStart, int textEnd, long samples, int rate) {
+        if (sampleRate == 0) {
+            sampleRate = rate;
+        } else if (rate != sampleRate) {
+            samples = samples * sampleRate / rate;
+        }
+        if (size > 0 && textStarts[size - 1] == textStart && textEnds[size - 1] == textEnd) {
+            sampleCounts[size - 1] += samples;
+            return size - 1;
+        }
+        if (size == textStarts.length) {
+            int capacity = size * 2;
+            textStarts = Arrays.copyOf(textStarts, capacity);
+            textEnds = Arrays.copyOf(textEnds, capacity);
+            sampleStarts = Arrays.copyOf(sampleStarts, capacity);
+            sampleCounts = Arrays.copyOf(sampleCounts, capacity);
+            playStartNanos = Arrays.copyOf(playStartNanos, capacity);
+        }
+        textStarts[size] = textStart;
+        textEnds[size] = textEnd;
+        sampleStarts[size] = size == 0 ? 0 : sampleStarts[size - 1] + sampleCounts[size - 1];
+        sampleCounts[size] = samples;
+        return size++;
+    }
+
+    // Sentences must be added in text order
+    synchronized void addSentence(int textStart, int textEnd) {
+        if (sentences == sentenceStarts.length) {
+            int capacity = sentences * 2;
+            sentenceStarts = Arrays.copyOf(sentenceStarts, capacity);
+            sentenceEnds = Arrays.copyOf(sentenceEnds, capacity);
+        }
+        sentenceStarts[sentences] = textStart;
+        sentenceEnds[sentences] = textEnd;
+        sentences++;
+    }
+
+    // Playback of the segment started (or is scheduled to start) at nanoTime.
+    // Only the first call for a segment counts.
+    synchronized void started(int segment, long nanoTime) {
+        if (segment > playing) {
+            playStartNanos[segment] = nanoTime;
+            playing = segment;
+        }
+    }
+
+    synchronized Position position(long nowNanos) {
+        if (playing < 0) {
+            return new Position(0, 0, 0, 0, 0, 0, 0, remainingMillis(0));
+        }
+        // The newest segment whose start time has passed
+        int segment = playing;
+        while (segment > 0 && playStartNanos[segment] > nowNanos) {
+            segment--;
+        }
+        long elapsedSamples = Math.max(0, (nowNanos - playStartNanos[segment]) * sampleRate / 1_000_000_000L);
+        long inSegment = Math.min(elapsedSamples, sampleCounts[segment]);
+        double fraction = sampleCounts[segment] == 0 ? 1 : (double) inSegment / sampleCounts[segment];
+        int offset = textStarts[segment] + (int) ((textEnds[segment] - textStarts[segment]) * fraction);
+        long played = sampleStarts[segment] + inSegment;
+        double progress = textLength == 0 ? 1 : Math.min(1.0, (double) offset / textLength);
+
+        // The sentence holding the offset, kept inside the segment; the whole
+        // segment if no sentence was recorded there
+        int segmentStart = textStarts[segment], segmentEnd = textEnds[segment];
+        int at = Math.min(offset, Math.max(segmentStart, segmentEnd - 1));
+        int sentenceStart = segmentStart, sentenceEnd = segmentEnd;
+        int sentence = firstSentenceEndingAfter(at);
+        if (sentence < sentences && sentenceStarts[sentence] < segmentEnd && sentenceEnds[sentence] > segmentStart) {
+            sentenceStart = Math.max(segmentStart, sentenceStarts[sentence]);
+            sentenceEnd = Math.min(segmentEnd, sentenceEnds[sentence]);
+        }
+        return new Position(offset, segmentStart, segmentEnd, sentenceStart, sentenceEnd,
+            played, progress, remainingMillis(played));
+    }
+
+    private int firstSentenceEndingAfter(int offset) {
+        int low = 0, high = sentences;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sentenceEnds[mid] > offset) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // Audio still to play plus an estimate for text not synthesized yet
+    private long remainingMillis(long playedSamples) {
+        if (size == 0) {
+            return -1;
+        }
+        long synthesizedSamples = sampleStarts[size - 1] + sampleCounts[size - 1];
+        int synthesizedChars = textEnds[size - 1];
+        double samplesPerChar = synthesizedChars == 0 ? 0 : (double) synthesizedSamples / synthesizedChars;
+        long pendingSamples = synthesizedSamples - playedSamples
+            + (long) ((textLength - synthesizedChars) * samplesPerChar);
+        return Math.max(0, pendingSamples) * 1000 / sampleRate;
+    }
+}
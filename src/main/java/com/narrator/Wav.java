@@ -0,0 +1,84 @@
+package com.narrator;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Canonical 44-byte PCM WAV header, and just enough parsing to find the PCM data
+final class Wav {
+
+    static final int HEADER_SIZE = 44;
+
+    record Format(int sampleRate, int channels, int bitsPerSample, long dataLength) {
+        boolean sameEncoding(Format other) {
+            return sampleRate == other.sampleRate
+                && channels == other.channels
+                && bitsPerSample == other.bitsPerSample;
+        }
+
+        int bytesPerSecond() {
+            return sampleRate * channels * bitsPerSample / 8;
+        }
+    }
+
+    private Wav() {
+    }
+
+    static byte[] header(int sampleRate, int channels, int bitsPerSample, long dataLength) {
+        int blockAlign = channels * bitsPerSample / 8;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'R', 'I', 'F', 'F'});
+        header.putInt((int) Math.min(0xFFFFFFFFL, dataLength + HEADER_SIZE - 8));
+        header.put(new byte[] {'W', 'A', 'V', 'E'});
+        header.put(new byte[] {'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort((short) 1);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) bitsPerSample);
+        header.put(new byte[] {'d', 'a', 't', 'a'});
+        header.putInt((int) Math.min(0xFFFFFFFFL, dataLength));
+        return header.array();
+    }
+
+    // Reads the RIFF header up to the start of the data chunk; the stream is left
+    // positioned on the first PCM byte. dataLength is -1 when the writer left it open.
+    static Format readHeader(InputStream in) throws IOException {
+        ByteBuffer riff = ByteBuffer.wrap(readFully(in, 12)).order(ByteOrder.LITTLE_ENDIAN);
+        if (riff.getInt(0) != 0x46464952 || riff.getInt(8) != 0x45564157) {
+            throw new IOException("Not a WAV file");
+        }
+        int sampleRate = 0, channels = 0, bits = 0;
+        while (true) {
+            ByteBuffer chunk = ByteBuffer.wrap(readFully(in, 8)).order(ByteOrder.LITTLE_ENDIAN);
+            int id = chunk.getInt(0);
+            long length = chunk.getInt(4) & 0xFFFFFFFFL;
+            if (id == 0x20746D66) { // "fmt "
+                ByteBuffer fmt = ByteBuffer.wrap(readFully(in, (int) length)).order(ByteOrder.LITTLE_ENDIAN);
+                channels = fmt.getShort(2);
+                sampleRate = fmt.getInt(4);
+                bits = fmt.getShort(14);
+            } else if (id == 0x61746164) { // "data"
+                if (sampleRate == 0) {
+                    throw new IOException("WAV data before format chunk");
+                }
+                boolean open = length == 0 || length == 0xFFFFFFFFL;
+                return new Format(sampleRate, channels, bits, open ? -1 : length);
+            } else {
+                in.skipNBytes(length + (length & 1));
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Truncated WAV header");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,79 @@
+package com.narrator;
+
+import com.narrator.engine.AudioChunk;
+import com.narrator.engine.AudioFormat;
+import com.narrator.engine.PcmSubscriber;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+// Export: writes the stream to a WAV file, patching the lengths in at the end.
+// A failed or cancelled export leaves no partial file behind.
+final class WavFileSubscriber extends PcmSubscriber {
+
+    private static final int WINDOW = 8;
+
+    private final Path file;
+    private final IntConsumer progress;
+    private FileChannel channel;
+    private AudioFormat format;
+    private long dataLength;
+
+    // progress receives the end offset of the text written so far
+    WavFileSubscriber(Path file, IntConsumer progress) {
+        super(WINDOW);
+        this.file = file;
+        this.progress = progress;
+    }
+
+    @Override
+    protected void consume(AudioChunk chunk) throws IOException {
+        if (channel == null) {
+            format = chunk.format();
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            write(ByteBuffer.wrap(header(0)));
+        } else if (!format.equals(chunk.format())) {
+            throw new IOException("Audio format changed mid-stream");
+        }
+        write(ByteBuffer.wrap(chunk.pcm()));
+        dataLength += chunk.pcm().length;
+        progress.accept(chunk.textEnd());
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        if (channel == null) {
+            throw new IOException("Engine produced no audio");
+        }
+        channel.position(0);
+        write(ByteBuffer.wrap(header(dataLength)));
+        channel.close();
+    }
+
+    @Override
+    protected void abort(Throwable cause) {
+        if (channel != null) {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private byte[] header(long length) {
+        return Wav.header(format.sampleRate(), format.channels(), format.bitsPerSample(), length);
+    }
+}
@@ -0,0 +1,74 @@
+package com.narrator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+
+// Plays a whole WAV from scratch space and returns when it has finished: aplay
+// fed through stdin on Linux, the platform's file player elsewhere. Runs in the
+// narration group, so Stop ends it.
+final class WavPlayer {
+
+    private final ProcessSupervisor supervisor;
+
+    WavPlayer(ProcessSupervisor supervisor) {
+        this.supervisor = supervisor;
+    }
+
+    void play(ScratchSpace.Buffer wav) throws Exception {
+        Duration deadline = playbackDeadline(wav);
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.contains("win") || os.contains("mac")) {
+            // These players need a file: spill to the scratch directory
+            playFile(wav.file().toFile(), deadline);
+            return;
+        }
+
+        // aplay reads the WAV from stdin, nothing touches the disk
+        ProcessSupervisor.Supervised player = supervisor.start(ProcessSupervisor.NARRATION, "aplay",
+            new ProcessBuilder("aplay", "-q"), null, deadline, ProcessSupervisor.PLAYER_STALL_TIMEOUT);
+        player.watchStdin();
+        try (OutputStream in = player.stdin()) {
+            wav.writeTo(in);
+        } catch (IOException e) {
+            if (player.isAlive()) {
+                throw e;
+            }
+            // Player was stopped
+        }
+        player.waitFor();
+    }
+
+    private void playFile(File wavFile, Duration deadline) throws Exception {
+        String os = System.getProperty("os.name").toLowerCase();
+        ProcessBuilder pb;
+
+        if (os.contains("win")) {
+            pb = new ProcessBuilder("powershell", "-Command",
+                String.format("(New-Object Media.SoundPlayer '%s').PlaySync()", 
+                    wavFile.getAbsolutePath()));
+        } else if (os.contains("mac")) {
+            pb = new ProcessBuilder("afplay", wavFile.getAbsolutePath());
+        } else {
+            pb = new ProcessBuilder("aplay", wavFile.getAbsolutePath());
+        }
+
+        ProcessSupervisor.Supervised player = supervisor.start(ProcessSupervisor.NARRATION, pb.command().get(0), pb,
+            null, deadline, ProcessSupervisor.QUIET_STALL_TIMEOUT);
+        player.watchCpu();
+        player.waitFor();
+    }
+
+    // Length of the audio plus slack for the player to start
+    private static Duration playbackDeadline(ScratchSpace.Buffer wav) throws IOException {
+        long audioMillis;
+        try (InputStream in = wav.inputStream()) {
+            Wav.Format format = Wav.readHeader(in);
+            long length = format.dataLength() >= 0 ? format.dataLength() : wav.size() - Wav.HEADER_SIZE;
+            audioMillis = length * 1000 / Math.max(1, format.bytesPerSecond());
+        }
+        return Duration.ofSeconds(15).plusMillis(audioMillis);
+    }
+}
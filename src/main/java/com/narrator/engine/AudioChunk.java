@@ -0,0 +1,14 @@
+package com.narrator.engine;
+
+/**
+ * A piece of synthesized audio. {@code pcm} always holds whole frames.
+ * {@code textStart}/{@code textEnd} is the range of the request text the
+ * utterance this audio belongs to was synthesized from; an utterance may be
+ * split over several chunks, which then share the range.
+ */
+public record AudioChunk(AudioFormat format, byte[] pcm, int textStart, int textEnd) {
+
+    public long durationNanos() {
+        return format.nanos(pcm.length);
+    }
+}
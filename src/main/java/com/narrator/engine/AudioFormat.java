@@ -0,0 +1,20 @@
+package com.narrator.engine;
+
+/**
+ * Encoding of the PCM in an {@link AudioChunk}: signed little-endian samples
+ * (unsigned for 8 bit), channels interleaved.
+ */
+public record AudioFormat(int sampleRate, int channels, int bitsPerSample) {
+
+    public int bytesPerFrame() {
+        return channels * bitsPerSample / 8;
+    }
+
+    public int bytesPerSecond() {
+        return sampleRate * bytesPerFrame();
+    }
+
+    public long nanos(long bytes) {
+        return bytes * 1_000_000_000L / Math.max(1, bytesPerSecond());
+    }
+}
@@ -0,0 +1,69 @@
+package com.narrator.engine;
+
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Passes a stream through to another subscriber unchanged and measures it:
+ * time to the first chunk, chunks, bytes and audio produced, and how fast
+ * audio arrived compared to real time. Demand is left entirely to the wrapped
+ * subscriber. Nothing is reported for a stream the subscriber cancelled.
+ */
+public final class MeteredSubscriber implements Flow.Subscriber<AudioChunk> {
+
+    /**
+     * @param realTimeFactor wall time / audio time; below 1 is faster than real time
+     * @param error          null when the stream completed
+     */
+    public record Metrics(long firstChunkMillis, long elapsedMillis, int chunks, long bytes,
+                          double audioSeconds, double realTimeFactor, Throwable error) {}
+
+    private final Flow.Subscriber<? super AudioChunk> delegate;
+    private final Consumer<Metrics> onEnd;
+    private long startNanos;
+    private long firstChunkNanos;
+    private int chunks;
+    private long bytes;
+    private long audioNanos;
+
+    public MeteredSubscriber(Flow.Subscriber<? super AudioChunk> delegate, Consumer<Metrics> onEnd) {
+        this.delegate = delegate;
+        this.onEnd = onEnd;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        startNanos = System.nanoTime();
+        delegate.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(AudioChunk chunk) {
+        if (chunks++ == 0) {
+            firstChunkNanos = System.nanoTime();
+        }
+        bytes += chunk.pcm().length;
+        audioNanos += chunk.durationNanos();
+        delegate.onNext(chunk);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        report(throwable);
+        delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        report(null);
+        delegate.onComplete();
+    }
+
+    private void report(Throwable error) {
+        long elapsed = System.nanoTime() - startNanos;
+        onEnd.accept(new Metrics(
+            chunks == 0 ? -1 : (firstChunkNanos - startNanos) / 1_000_000,
+            elapsed / 1_000_000, chunks, bytes, audioNanos / 1e9,
+            audioNanos == 0 ? 0 : (double) elapsed / audioNanos, error));
+    }
+}
@@ -0,0 +1,164 @@
+package com.narrator.engine;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publisher for engines that produce audio in a loop. The producer starts on
+ * the given executor as soon as a subscriber is attached and hands each chunk
+ * to {@link Emitter#emit}, which blocks until the subscriber has requested it.
+ * Work the producer does before an emit (such as synthesizing an utterance)
+ * is not held back by demand. Cancelling interrupts the producer.
+ */
+public final class PcmPublisher implements Flow.Publisher<AudioChunk> {
+
+    @FunctionalInterface
+    public interface Producer {
+        void produce(Emitter emitter) throws Exception;
+    }
+
+    public interface Emitter {
+        /**
+         * Delivers a chunk once there is demand for it.
+         *
+         * @throws CancellationException if the subscriber cancelled
+         */
+        void emit(AudioChunk chunk) throws InterruptedException;
+
+        boolean isCancelled();
+    }
+
+    private final Producer producer;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public PcmPublisher(Producer producer, Executor executor) {
+        this.producer = producer;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super AudioChunk> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Audio stream already consumed"));
+            return;
+        }
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        executor.execute(subscription::run);
+    }
+
+    private final class Subscription implements Flow.Subscription, Emitter {
+        private final Flow.Subscriber<? super AudioChunk> subscriber;
+
+        // Guarded by 'this'
+        private long demand;
+        private boolean cancelled;
+        private Throwable protocolError;
+        private Thread producerThread;
+
+        Subscription(Flow.Subscriber<? super AudioChunk> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                protocolError = new IllegalArgumentException("Non-positive request: " + n);
+                stop();
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            if (!cancelled) {
+                stop();
+            }
+        }
+
+        private void stop() {
+            cancelled = true;
+            notifyAll();
+            if (producerThread != null) {
+                producerThread.interrupt();
+            }
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void emit(AudioChunk chunk) throws InterruptedException {
+            synchronized (this) {
+                while (demand == 0 && !cancelled) {
+                    wait();
+                }
+                if (cancelled) {
+                    throw new CancellationException();
+                }
+                demand--;
+            }
+            subscriber.onNext(chunk);
+        }
+
+        void run() {
+            synchronized (this) {
+                if (cancelled && protocolError == null) {
+                    return;
+                }
+                producerThread = Thread.currentThread();
+            }
+            Throwable failure = null;
+            try {
+                if (protocolError == null) {
+                    producer.produce(this);
+                }
+            } catch (CancellationException e) {
+                // Subscriber went away
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                synchronized (this) {
+                    producerThread = null;
+                    // A cancel() that came in late must not hit the executor's next task
+                    Thread.interrupted();
+                }
+            }
+
+            Throwable error;
+            synchronized (this) {
+                error = protocolError != null ? protocolError : (cancelled ? null : failure);
+                if (error == null && cancelled) {
+                    return;
+                }
+                cancelled = true;
+            }
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
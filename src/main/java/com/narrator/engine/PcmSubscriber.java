@@ -0,0 +1,164 @@
+package com.narrator.engine;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+/**
+ * Base for audio sinks. Keeps at most {@code window} chunks requested ahead and
+ * asks for more as they are consumed, so memory held by the stream is bounded
+ * by the window. Completion (or the first failure) is reported through
+ * {@link #completion()}.
+ */
+public abstract class PcmSubscriber implements Flow.Subscriber<AudioChunk> {
+
+    private final int window;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean cancelled;
+    private int outstanding;
+
+    // A failure that arrives while consume() or finish() runs is handled when it returns
+    private boolean busy;
+    private Throwable pendingAbort;
+
+    protected PcmSubscriber(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be at least 1");
+        }
+        this.window = window;
+    }
+
+    /** Called in order, on one thread at a time. */
+    protected abstract void consume(AudioChunk chunk) throws Exception;
+
+    /** The stream ended normally. */
+    protected void finish() throws Exception {
+    }
+
+    /**
+     * The stream failed or was cancelled; release what {@link #consume} acquired.
+     * Never runs concurrently with {@link #consume} or {@link #finish}.
+     */
+    protected void abort(Throwable cause) {
+    }
+
+    @Override
+    public final void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        outstanding = window;
+        subscription.request(window);
+    }
+
+    @Override
+    public final void onNext(AudioChunk chunk) {
+        if (!enter()) {
+            return;
+        }
+        try {
+            consume(chunk);
+        } catch (Throwable t) {
+            subscription.cancel();
+            leave();
+            fail(t);
+            return;
+        }
+        if (!leave()) {
+            return;
+        }
+        // Top the window up in batches rather than one request per chunk
+        if (--outstanding <= window / 2) {
+            subscription.request(window - outstanding);
+            outstanding = window;
+        }
+    }
+
+    @Override
+    public final void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public final void onComplete() {
+        if (!enter()) {
+            return;
+        }
+        try {
+            finish();
+        } catch (Throwable t) {
+            leave();
+            fail(t);
+            return;
+        }
+        if (leave()) {
+            completion.complete(null);
+        }
+    }
+
+    public final void cancel() {
+        cancelled = true;
+        Flow.Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+        fail(new CancellationException());
+    }
+
+    public final CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    /** Waits for the stream to end; cancels it if the waiting thread is interrupted. */
+    public final void await() throws Exception {
+        try {
+            completion.get();
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private synchronized boolean enter() {
+        if (completion.isDone()) {
+            return false;
+        }
+        busy = true;
+        return true;
+    }
+
+    // False if the stream failed meanwhile (the deferred abort has then run)
+    private boolean leave() {
+        Throwable cause;
+        synchronized (this) {
+            busy = false;
+            cause = pendingAbort;
+            pendingAbort = null;
+        }
+        if (cause != null) {
+            abort(cause);
+            return false;
+        }
+        return true;
+    }
+
+    private void fail(Throwable cause) {
+        if (!completion.completeExceptionally(cause)) {
+            return;
+        }
+        synchronized (this) {
+            if (busy) {
+                pendingAbort = cause;
+                return;
+            }
+        }
+        abort(cause);
+    }
+}
@@ -0,0 +1,21 @@
+package com.narrator.engine;
+
+import java.util.concurrent.Flow;
+
+/**
+ * A text-to-speech engine. Synthesis is paced by demand, not gated by it: the
+ * engine starts when subscribed to and may synthesize one utterance before its
+ * first chunk is requested. From then on it stops at the next chunk the
+ * subscriber has not asked for, so a slow consumer slows synthesis down
+ * instead of making it buffer more than an utterance.
+ */
+public interface SpeechEngine {
+
+    String name();
+
+    /**
+     * Returns a cold, single-use publisher: synthesis starts when it is
+     * subscribed to, and a second subscriber is refused.
+     */
+    Flow.Publisher<AudioChunk> synthesize(SpeechRequest request);
+}
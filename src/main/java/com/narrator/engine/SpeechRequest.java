@@ -0,0 +1,11 @@
+package com.narrator.engine;
+
+/**
+ * What to say and how. {@code voice} is engine specific: a model path for
+ * Piper, a voice name for the system engine.
+ *
+ * @param speed  1.0 is the engine's normal rate
+ * @param volume 0 to 100
+ */
+public record SpeechRequest(String text, String voice, double speed, int volume) {
+}
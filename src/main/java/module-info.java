@@ -7,4 +7,5 @@ module com.narrator {
 
     opens com.narrator to javafx.fxml;
     exports com.narrator;
+    exports com.narrator.engine;
 }